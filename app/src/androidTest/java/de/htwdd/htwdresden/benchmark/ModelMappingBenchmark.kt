@@ -0,0 +1,89 @@
+package de.htwdd.htwdresden.benchmark
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.google.gson.Gson
+import com.google.gson.reflect.TypeToken
+import de.htwdd.htwdresden.ui.models.*
+import de.htwdd.htwdresden.utils.extensions.contentDeepEquals
+import de.htwdd.htwdresden.utils.extensions.uid
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Measures the model mapping done on every refresh, on the recorded payloads of the :macrobenchmark fixtures.
+ * Time and allocation count per iteration are reported by the benchmark library.
+ *
+ * ./gradlew :app:connectedBenchmarkAndroidTest -Pmicrobenchmark
+ */
+@RunWith(AndroidJUnit4::class)
+class ModelMappingBenchmark {
+
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val gson = Gson()
+
+    private val jTimetables: List<JTimetable> = fixture("timetable.json")
+    private val jGrades: List<JGrade> = fixture("grades.json")
+    private val jMeals: List<JMeal> = fixture("meals.json")
+
+    private inline fun <reified T> fixture(name: String): T {
+        val json = InstrumentationRegistry.getInstrumentation().context.assets.open("fixtures/$name").bufferedReader().use { it.readText() }
+        return gson.fromJson(json, object: TypeToken<T>() {}.type)
+    }
+
+    @Test
+    fun timetableFrom() = benchmarkRule.measureRepeated {
+        jTimetables.map { Timetable.from(it) }
+    }
+
+    @Test
+    fun timetableLessonDays() = benchmarkRule.measureRepeated {
+        jTimetables.forEach { Timetable.lessonDays(it.day, it.weeksOnly) }
+    }
+
+    @Test
+    fun timetableLessonEpochDays() = benchmarkRule.measureRepeated {
+        jTimetables.forEach { Timetable.lessonEpochDays(it.day, it.weeksOnly) }
+    }
+
+    @Test
+    fun gradeFrom() = benchmarkRule.measureRepeated {
+        jGrades.map { Grade.from(it) }
+    }
+
+    @Test
+    fun mealFrom() = benchmarkRule.measureRepeated {
+        jMeals.map { Meal.from(it) }
+    }
+
+    @Test
+    fun mealItemInit() {
+        val meals = jMeals.map { Meal.from(it) }
+        benchmarkRule.measureRepeated {
+            meals.map { MealItem(it) }
+        }
+    }
+
+    @Test
+    fun uid() {
+        val ids = jTimetables.map { it.id }
+        benchmarkRule.measureRepeated {
+            ids.forEach { it.uid }
+        }
+    }
+
+    @Test
+    fun contentDeepEquals() {
+        val timetables = jTimetables.map { Timetable.from(it) }
+        val items = timetables.map { TimetableItem(it) }
+        val otherItems = timetables.map { TimetableItem(it) }
+        benchmarkRule.measureRepeated {
+            items contentDeepEquals otherItems
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.htwdd.htwdresden.benchmark
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.google.gson.Gson
+import com.google.gson.reflect.TypeToken
+import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.ui.models.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.lang.reflect.Type
+
+/**
+ * Compares the reflective Gson used before with the shared [RestApi.gson] and its streaming adapters,
+ * on the recorded payloads of the :macrobenchmark fixtures.
+ *
+ * ./gradlew :app:connectedBenchmarkAndroidTest -Pmicrobenchmark
+ */
+@RunWith(AndroidJUnit4::class)
+class ParserBenchmark {
+
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val reflective = Gson()
+    private val streaming = RestApi.gson
+
+    private val timetableType: Type = object: TypeToken<List<JTimetable>>() {}.type
+    private val gradesType: Type = object: TypeToken<List<JGrade>>() {}.type
+    private val mealsType: Type = object: TypeToken<List<JMeal>>() {}.type
+    private val canteensType: Type = object: TypeToken<List<JCanteen>>() {}.type
+    private val coursesType: Type = object: TypeToken<List<JCourse>>() {}.type
+
+    private fun fixture(name: String) =
+        InstrumentationRegistry.getInstrumentation().context.assets.open("fixtures/$name").bufferedReader().use { it.readText() }
+
+    private fun measure(gson: Gson, name: String, type: Type) {
+        val json = fixture(name)
+        benchmarkRule.measureRepeated {
+            gson.fromJson<Any>(json, type)
+        }
+    }
+
+    @Test
+    fun timetableReflective() = measure(reflective, "timetable.json", timetableType)
+
+    @Test
+    fun timetableStreaming() = measure(streaming, "timetable.json", timetableType)
+
+    @Test
+    fun gradesReflective() = measure(reflective, "grades.json", gradesType)
+
+    @Test
+    fun gradesStreaming() = measure(streaming, "grades.json", gradesType)
+
+    @Test
+    fun mealsReflective() = measure(reflective, "meals.json", mealsType)
+
+    @Test
+    fun mealsStreaming() = measure(streaming, "meals.json", mealsType)
+
+    @Test
+    fun canteensReflective() = measure(reflective, "canteens.json", canteensType)
+
+    @Test
+    fun canteensStreaming() = measure(streaming, "canteens.json", canteensType)
+
+    @Test
+    fun coursesReflective() = measure(reflective, "courses.json", coursesType)
+
+    @Test
+    fun coursesStreaming() = measure(streaming, "courses.json", coursesType)
+}
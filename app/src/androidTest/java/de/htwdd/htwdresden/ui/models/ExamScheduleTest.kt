@@ -0,0 +1,122 @@
+package de.htwdd.htwdresden.ui.models
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import de.htwdd.htwdresden.utils.extensions.toDate
+import org.junit.Assert.*
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.*
+
+/**
+ * Lookups of [ExamSchedule] at the edges of the index and across week boundaries.
+ *
+ * ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4::class)
+class ExamScheduleTest {
+
+    private fun exam(title: String, start: Long, end: Long = start + 90 * MINUTE) =
+        Exam(title, "SP", "", "", "", "", "", "", emptyList(), start, end)
+
+    @Test
+    fun lowerBoundOfEmptySchedule() {
+        val schedule = ExamSchedule(emptyList())
+
+        assertEquals(0, schedule.lowerBound(0))
+        assertEquals(0, schedule.lowerBound(Long.MAX_VALUE))
+        assertTrue(schedule.conflictsWith(0, Long.MAX_VALUE).isEmpty())
+    }
+
+    @Test
+    fun lowerBoundOfEqualStarts() {
+        val schedule = ExamSchedule(listOf(exam("A", 1000 * MINUTE), exam("B", 1000 * MINUTE), exam("C", 2000 * MINUTE)))
+
+        assertEquals(0, schedule.lowerBound(1000 * MINUTE))
+        assertEquals(2, schedule.lowerBound(1000 * MINUTE + 1))
+        assertEquals(listOf("A", "B"), schedule.conflictsWith(1000 * MINUTE, 1000 * MINUTE + 1).map { it.title }.sorted())
+    }
+
+    @Test
+    fun lowerBoundAfterLastExam() {
+        val schedule = ExamSchedule(listOf(exam("A", 1000 * MINUTE), exam("B", 2000 * MINUTE)))
+
+        assertEquals(2, schedule.lowerBound(3000 * MINUTE))
+        assertTrue(schedule.conflictsWith(3000 * MINUTE, 4000 * MINUTE).isEmpty())
+        // still running at the start of the interval
+        assertEquals(listOf("B"), schedule.conflictsWith(2000 * MINUTE + 30, 4000 * MINUTE).map { it.title })
+    }
+
+    @Test
+    fun nextExam() {
+        val schedule = ExamSchedule(listOf(exam("A", 1000 * MINUTE), exam("B", 2000 * MINUTE)))
+
+        assertEquals("A", schedule.next(0)?.title)
+        assertEquals("A", schedule.next(1000 * MINUTE)?.title)
+        assertEquals("B", schedule.next(1000 * MINUTE + 1)?.title)
+        assertNull(schedule.next(2000 * MINUTE + 1))
+        assertNull(ExamSchedule(emptyList()).next(0))
+    }
+
+    @Test
+    fun betweenIsHalfOpen() {
+        val schedule = ExamSchedule(listOf(exam("A", 1000 * MINUTE), exam("B", 2000 * MINUTE), exam("C", 3000 * MINUTE)))
+
+        assertEquals(listOf("A", "B"), schedule.between(1000 * MINUTE, 3000 * MINUTE).map { it.title })
+        assertEquals(listOf("B", "C"), schedule.between(1000 * MINUTE + 1, Long.MAX_VALUE).map { it.title })
+        assertTrue(schedule.between(3000 * MINUTE, 1000 * MINUTE).isEmpty())
+    }
+
+    @Test
+    fun thisWeekFromMondayToSunday() {
+        val zone = TimeZone.getTimeZone("Europe/Berlin")
+        fun at(day: Int, hour: Int) = Calendar.getInstance(zone).apply { clear(); set(2024, Calendar.MARCH, day, hour, 0) }.timeInMillis
+        // monday the 25th to sunday the 31st of march 2024, the clocks were set forward on sunday
+        val schedule = ExamSchedule(listOf(
+            exam("Sunday before", at(24, 23)),
+            exam("Monday", at(25, 0)),
+            exam("Sunday", at(31, 23)),
+            exam("Monday after", at(32, 0))))
+
+        assertEquals(listOf("Monday", "Sunday"), schedule.thisWeek(at(27, 12), zone).map { it.title })
+        assertEquals(listOf("Monday", "Sunday"), schedule.thisWeek(at(31, 23) + 30 * MINUTE, zone).map { it.title })
+        assertEquals(listOf("Sunday before"), schedule.thisWeek(at(24, 12), zone).map { it.title })
+    }
+
+    @Test
+    fun unscheduledExamsAreIgnored() {
+        val unscheduled = Exam("X", "SP", "", "", "", "", "", "", emptyList())
+        val schedule = ExamSchedule(listOf(unscheduled, exam("A", 1000 * MINUTE)))
+
+        assertEquals(listOf("A"), schedule.exams.map { it.title })
+        assertEquals(1, schedule.lowerBound(Long.MAX_VALUE - 1))
+    }
+
+    @Test
+    fun conflictsWithLessonDays() {
+        val zone = TimeZone.getDefault()
+        val begin = Calendar.getInstance(zone).apply { clear(); set(2024, Calendar.FEBRUARY, 5, 9, 20) }.timeInMillis
+        val exam = exam("Mathematik", begin + 30 * MINUTE)
+        val timetable = Timetable(
+            id = "1",
+            lessonTag = "MA",
+            name = "Mathematik",
+            type = "V",
+            day = 1,
+            beginTime = "09:20:00".toDate("HH:mm:ss")!!,
+            endTime = "10:50:00".toDate("HH:mm:ss")!!,
+            week = 0,
+            weeksOnly = listOf(6L, 7L),
+            rooms = emptyList(),
+            lastChanged = "",
+            lessonDays = listOf("02-05-2024", "02-12-2024"))
+
+        val lessons = listOf(TimetableRealm.fromTimetable(timetable))
+
+        assertEquals(mapOf(exam to listOf("Mathematik")), ExamSchedule(listOf(exam)).conflictsWith(lessons, zone))
+        assertTrue(ExamSchedule(listOf(exam(exam.title, begin - 24 * 60 * MINUTE))).conflictsWith(lessons, zone).isEmpty())
+    }
+
+    private companion object {
+        const val MINUTE = 60_000L
+    }
+}
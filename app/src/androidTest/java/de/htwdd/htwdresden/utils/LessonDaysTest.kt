@@ -0,0 +1,170 @@
+package de.htwdd.htwdresden.utils
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.*
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.text.SimpleDateFormat
+import java.util.*
+import java.util.Calendar.*
+
+/**
+ * The epoch day arithmetic of [LessonDays] against a copy of the calendar based `Timetable.lessonDays` it replaced,
+ * on random weekdays, weeks and dates. Around new year the old code took the calendar year of the lesson day in the
+ * current week, which is a year off for some weekdays, those cases are asserted explicitly.
+ *
+ * ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4::class)
+class LessonDaysTest {
+
+    private val random = Random(32)
+    private val utc = TimeZone.getTimeZone("UTC")
+
+    private fun epochDay(year: Int, month: Int, day: Int) = GregorianCalendar(utc).run {
+        clear()
+        set(year, month - 1, day)
+        timeInMillis / DAY
+    }
+
+    /**
+     * `Timetable.lessonDays` before the epoch day arithmetic, with [today] in place of the current time.
+     */
+    private fun previousLessonDays(dayOfWeek: Long, weeksOnly: List<Long>, today: Long): List<String> {
+        val now = GregorianCalendar.getInstance(Locale.GERMANY).apply { timeInMillis = noon(today) }
+        val calendar = GregorianCalendar.getInstance(Locale.GERMANY).apply {
+            timeInMillis = noon(today)
+            set(DAY_OF_WEEK, (dayOfWeek.toInt() % 7) + 1)
+        }
+        var currentYear = calendar.get(YEAR)
+        var lastWeek = now.get(WEEK_OF_YEAR)
+        val diffWeeks = weeksOnly.drop(1).zip(weeksOnly).map {
+            it.first - it.second
+        }.filter { it < 0 }
+
+        val format = SimpleDateFormat("MM-dd-yyyy", Locale.GERMANY)
+        return weeksOnly.map {
+            if (diffWeeks.isNotEmpty()) {
+                if (lastWeek - it < -10) {
+                    currentYear -= 1
+                } else if (lastWeek - it >= kotlin.math.abs(diffWeeks.first())) {
+                    currentYear += 1
+                }
+            }
+            lastWeek = it.toInt()
+            calendar.set(WEEK_OF_YEAR, it.toInt())
+            calendar.set(YEAR, currentYear)
+            format.format(calendar.time)
+        }
+    }
+
+    /** Noon of the epoch day in the default time zone, as the old code ran on the current time. */
+    private fun noon(epochDay: Long) = GregorianCalendar.getInstance().run {
+        val date = GregorianCalendar(utc).apply { timeInMillis = epochDay * DAY }
+        clear()
+        set(date.get(YEAR), date.get(MONTH), date.get(DAY_OF_MONTH), 12, 0)
+        timeInMillis
+    }
+
+    private fun weeksInYear(year: Int) = GregorianCalendar(utc, Locale.GERMANY).run {
+        firstDayOfWeek = MONDAY
+        minimalDaysInFirstWeek = 4
+        clear()
+        set(year, DECEMBER, 28)                                                                 // always in the last week
+        get(WEEK_OF_YEAR)
+    }
+
+    private fun randomWeeks(year: Int, month: Int): List<Long> {
+        return if (random.nextBoolean()) {
+            // summer semester, within the year
+            val first = 1 + random.nextInt(weeksInYear(year) - 15)
+            (first until first + 1 + random.nextInt(15)).map { it.toLong() }
+        } else {
+            // winter semester, wraps after the last week of the year it started in
+            val weeks = weeksInYear(if (month < 7) year - 1 else year)
+            val first = weeks - random.nextInt(12)
+            ((first..weeks) + (1..1 + random.nextInt(8))).map { it.toLong() }
+        }
+    }
+
+    @Test
+    fun matchesPreviousCodeAwayFromNewYear() {
+        val from = epochDay(1990, 1, 1)
+        val to = epochDay(2060, 12, 31)
+        var checked = 0
+        while (checked < 5000) {
+            val today = from + random.nextInt((to - from).toInt())
+            val date = LessonDays.format(today)
+            val month = date.substring(0, 2).toInt()
+            val day = date.substring(3, 5).toInt()
+            // the first and last week of a year, see the explicit cases below
+            if ((month == 12 && day > 21) || (month == 1 && day < 11)) continue
+            val dayOfWeek = random.nextInt(8).toLong()
+            val weeks = randomWeeks(date.substring(6).toInt(), month)
+
+            assertEquals("day $dayOfWeek weeks $weeks today $date",
+                previousLessonDays(dayOfWeek, weeks, today), LessonDays.epochDays(dayOfWeek, weeks, today).map { LessonDays.format(it) })
+            checked++
+        }
+    }
+
+    @Test
+    fun yearOfTheWeekNotOfTheLessonDay() {
+        // saturday the 2nd of january 2021 lies in week 53 of 2020, the sunday of that week in 2021
+        val today = epochDay(2021, 1, 2)
+        val weeks = listOf(50L, 51L, 52L, 53L, 1L, 2L)
+        assertEquals(listOf("12-13-2020", "12-20-2020", "12-27-2020", "01-03-2021", "01-10-2021", "01-17-2021"),
+            LessonDays.epochDays(0, weeks, today).map { LessonDays.format(it) })
+        // the previous code took 2021 and placed the semester a year later
+        assertEquals("12-19-2021", previousLessonDays(0, weeks, today)[0])
+        // for a monday both agree
+        assertEquals(previousLessonDays(1, weeks, today), LessonDays.epochDays(1, weeks, today).map { LessonDays.format(it) })
+    }
+
+    @Test
+    fun semesterOfThisYearInFirstWeekOfNext() {
+        // monday the 30th of december 2024 lies in week 1 of 2025, the winter semester started in 2024
+        val today = epochDay(2024, 12, 30)
+        val weeks = listOf(40L, 52L, 1L)
+        assertEquals(listOf("09-30-2024", "12-23-2024", "12-30-2024"),
+            LessonDays.epochDays(1, weeks, today).map { LessonDays.format(it) })
+        // the previous code compared week 1 with week 40 and moved the semester to 2023
+        assertEquals("10-02-2023", previousLessonDays(1, weeks, today)[0])
+    }
+
+    @Test
+    fun weekFiftyThreeWrapsIntoNextYear() {
+        // 2020 and 2026 have 53 ISO weeks
+        val today = epochDay(2020, 12, 1)
+        assertEquals(listOf("12-21-2020", "12-28-2020", "01-04-2021", "01-11-2021"),
+            LessonDays.epochDays(1, listOf(52L, 53L, 1L, 2L), today).map { LessonDays.format(it) })
+        assertEquals(listOf("12-31-2026", "01-07-2027"),
+            LessonDays.epochDays(4, listOf(53L, 1L), epochDay(2027, 1, 5)).map { LessonDays.format(it) })
+    }
+
+    @Test
+    fun firstWeekStartsInPreviousCalendarYear() {
+        // monday of week 1 of 2026 is the 29th of december 2025, of 2021 the 4th of january
+        assertEquals("12-29-2025", LessonDays.format(LessonDays.epochDays(1, listOf(1L), epochDay(2026, 1, 10))[0]))
+        assertEquals("01-04-2021", LessonDays.format(LessonDays.epochDays(1, listOf(1L), epochDay(2021, 1, 5))[0]))
+        assertEquals("01-03-2021", LessonDays.format(LessonDays.epochDays(0, listOf(53L), epochDay(2021, 1, 2))[0]))
+    }
+
+    @Test
+    fun formatAndParseMatchSimpleDateFormat() {
+        val format = SimpleDateFormat("MM-dd-yyyy", Locale.GERMANY).apply { timeZone = utc }
+        val from = epochDay(1900, 1, 1)
+        val to = epochDay(2100, 12, 31)
+        repeat(5000) {
+            val day = from + random.nextInt((to - from).toInt())
+            val text = format.format(Date(day * DAY))
+            assertEquals(text, LessonDays.format(day))
+            assertEquals(day, LessonDays.parse(text))
+        }
+        assertNull(LessonDays.parse("2024-01-01"))
+    }
+
+    private companion object {
+        const val DAY = 24L * 60L * 60L * 1000L
+    }
+}
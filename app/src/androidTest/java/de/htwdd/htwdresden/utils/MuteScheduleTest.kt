@@ -0,0 +1,118 @@
+package de.htwdd.htwdresden.utils
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import de.htwdd.htwdresden.ui.models.Timetable
+import de.htwdd.htwdresden.ui.models.TimetableRealm
+import de.htwdd.htwdresden.utils.extensions.toDate
+import org.junit.Assert.*
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.*
+
+/**
+ * Transitions of [MuteSchedule] around week, year and semester boundaries.
+ *
+ * ./gradlew :app:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4::class)
+class MuteScheduleTest {
+
+    private fun minute(day: String, hour: Int, minute: Int) = LessonDays.parse(day)!! * 24 * 60 + hour * 60 + minute
+
+    private fun lesson(day: String, begin: Pair<Int, Int>, end: Pair<Int, Int>) =
+        minute(day, begin.first, begin.second) to minute(day, end.first, end.second)
+
+    @Test
+    fun nextLessonAfterWeekend() {
+        val schedule = MuteSchedule.of(listOf(
+            lesson("01-15-2024", 7 to 30, 9 to 0),                                                  // monday
+            lesson("01-12-2024", 15 to 10, 16 to 40)                                                // friday before
+        ))
+
+        assertEquals(MuteSchedule.Transition(minute("01-12-2024", 15, 10), true), schedule.next(minute("01-12-2024", 8, 0)))
+        assertEquals(MuteSchedule.Transition(minute("01-12-2024", 16, 40), false), schedule.next(minute("01-12-2024", 15, 10)))
+        assertEquals(MuteSchedule.Transition(minute("01-15-2024", 7, 30), true), schedule.next(minute("01-12-2024", 16, 40)))
+        assertEquals(MuteSchedule.Transition(minute("01-15-2024", 7, 30), true), schedule.next(minute("01-13-2024", 12, 0)))
+        assertNull(schedule.next(minute("01-15-2024", 9, 0)))
+    }
+
+    @Test
+    fun shortBreaksStayMuted() {
+        val schedule = MuteSchedule.of(listOf(
+            lesson("04-08-2024", 7 to 30, 9 to 0),
+            lesson("04-08-2024", 9 to 20, 10 to 50),
+            lesson("04-08-2024", 13 to 20, 14 to 50)
+        ))
+
+        assertEquals(2, schedule.size)
+        assertTrue(schedule.isMuted(minute("04-08-2024", 9, 10)))
+        assertEquals(MuteSchedule.Transition(minute("04-08-2024", 10, 50), false), schedule.next(minute("04-08-2024", 9, 10)))
+        assertFalse(schedule.isMuted(minute("04-08-2024", 12, 0)))
+    }
+
+    @Test
+    fun winterSemesterAcrossNewYear() {
+        val today = LessonDays.parse("12-01-2023")!!
+        val days = LessonDays.epochDays(1, listOf(51, 52, 1, 2), today).map { LessonDays.format(it) }
+        assertEquals(listOf("12-18-2023", "12-25-2023", "01-01-2024", "01-08-2024"), days)
+
+        val schedule = MuteSchedule.of(days.map { lesson(it, 11 to 10, 12 to 40) })
+        assertEquals(MuteSchedule.Transition(minute("01-01-2024", 11, 10), true), schedule.next(minute("12-25-2023", 12, 40)))
+        assertEquals(MuteSchedule.Transition(minute("01-08-2024", 12, 40), false), schedule.next(minute("01-08-2024", 11, 30)))
+    }
+
+    @Test
+    fun nextSemesterAfterLectureFreePeriod() {
+        val schedule = MuteSchedule.of(listOf(
+            lesson("02-02-2024", 9 to 20, 10 to 50),                                                // last of the winter semester
+            lesson("04-02-2024", 7 to 30, 9 to 0)                                                   // first of the summer semester
+        ))
+
+        assertEquals(MuteSchedule.Transition(minute("04-02-2024", 7, 30), true), schedule.next(minute("02-02-2024", 10, 50)))
+        assertEquals(MuteSchedule.Transition(minute("04-02-2024", 7, 30), true), schedule.next(minute("03-15-2024", 0, 0)))
+        assertNull(schedule.next(minute("04-02-2024", 9, 0)))
+        assertNull(MuteSchedule.of(emptyList<Pair<Long, Long>>()).next(0))
+    }
+
+    @Test
+    fun lessonDaysOfTimetables() {
+        val zone = TimeZone.getDefault()
+        val timetable = Timetable(
+            id = "1",
+            lessonTag = "MA",
+            name = "Mathematik",
+            type = "V",
+            day = 1,
+            beginTime = "07:30:00".toDate("HH:mm:ss")!!,
+            endTime = "09:00:00".toDate("HH:mm:ss")!!,
+            week = 0,
+            weeksOnly = listOf(15L, 16L),
+            rooms = emptyList(),
+            lastChanged = "",
+            lessonDays = listOf("04-08-2024", "04-15-2024"))
+        val empty = MuteSchedule.of(emptyList<TimetableRealm>(), zone)
+        val schedule = MuteSchedule.of(listOf(TimetableRealm.fromTimetable(timetable)), zone)
+
+        assertNull(empty.next(minute("04-08-2024", 0, 0)))
+        assertEquals(MuteSchedule.Transition(minute("04-15-2024", 7, 30), true), schedule.next(minute("04-08-2024", 9, 0)))
+    }
+
+    @Test
+    fun wallClockAcrossDaylightSaving() {
+        val zone = TimeZone.getTimeZone("Europe/Berlin")
+        // 31st of march 2024, the clocks were set forward at 2:00
+        listOf(minute("03-30-2024", 7, 30), minute("03-31-2024", 7, 30), minute("04-01-2024", 7, 30)).forEach {
+            assertEquals(it, WallClock.toMinute(WallClock.toMillis(it, zone), zone))
+        }
+    }
+
+    @Test
+    fun lookupIsIndexed() {
+        val day = LessonDays.parse("04-08-2024")!!
+        val schedule = MuteSchedule.of((0 until 5000L).map { (day + it) * 24 * 60 + 450 to (day + it) * 24 * 60 + 540 })
+        val start = System.nanoTime()
+        repeat(1000) { schedule.next((day + it * 5) * 24 * 60) }
+        val nanosPerLookup = (System.nanoTime() - start) / 1000
+        assertTrue(nanosPerLookup < 1_000_000)
+    }
+}
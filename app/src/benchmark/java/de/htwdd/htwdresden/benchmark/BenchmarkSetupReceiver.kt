@@ -0,0 +1,27 @@
+package de.htwdd.htwdresden.benchmark
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.util.Base64
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import java.nio.charset.Charset
+
+/**
+ * Skips the onboarding and stores fake credentials, so the benchmarks can open every screen.
+ *
+ * usage:
+ *
+ * adb shell am broadcast -n de.htwdd.htwdresden/.benchmark.BenchmarkSetupReceiver
+ */
+class BenchmarkSetupReceiver: BroadcastReceiver() {
+
+    override fun onReceive(context: Context, intent: Intent) {
+        CryptoSharedPreferencesHolder.instance.apply {
+            setOnboarding(false)
+            putStudyToken(Base64.encodeToString("21:041:71:B".toByteArray(Charset.forName("UTF-8")), Base64.DEFAULT))
+            putAuthToken(Base64.encodeToString("s00000:benchmark".toByteArray(Charset.forName("UTF-8")), Base64.NO_WRAP))
+        }
+        resultCode = 1
+    }
+}
@@ -9,6 +9,7 @@ import androidx.core.view.children
 import androidx.databinding.BindingAdapter
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout
 import de.htwdd.htwdresden.R
+import de.htwdd.htwdresden.custom.CampusMapView
 import de.htwdd.htwdresden.custom.LessonView
 import de.htwdd.htwdresden.ui.models.Timetable
 import de.htwdd.htwdresden.ui.views.fragments.ClickListener
@@ -126,6 +127,9 @@ fun setBackgroundTint(view: View, color: Int) {
     view.setBackgroundColor(ContextCompat.getColor(view.context, color))
 }
 
+@BindingAdapter("app:campusMap")
+fun setCampusMap(view: CampusMapView, resource: Int) = view.setCampusMap(resource)
+
 @BindingAdapter("app:isEnabled")
 fun enableSwipeRefresh(view: SwipeRefreshLayout, isEnabled: Boolean) {
     view.isEnabled = isEnabled
@@ -8,9 +8,11 @@ import androidx.databinding.ViewDataBinding
 import androidx.recyclerview.widget.ItemTouchHelper.LEFT
 import androidx.recyclerview.widget.ItemTouchHelper.RIGHT
 import androidx.recyclerview.widget.RecyclerView
+import androidx.tracing.trace
 import de.htwdd.htwdresden.interfaces.Identifiable
 import de.htwdd.htwdresden.interfaces.Modelable
 import de.htwdd.htwdresden.ui.models.*
+import de.htwdd.htwdresden.utils.Stage
 import de.htwdd.htwdresden.utils.extensions.click
 import de.htwdd.htwdresden.utils.extensions.contentDeepEquals
 import io.realm.OrderedCollectionChangeSet
@@ -71,6 +73,20 @@ abstract class GenericAdapter<T: Identifiable<K>, K: Modelable>(private val item
         }
     }
 
+    /**
+     * Replaces the items without changing the structure of the list, only the [changed] positions are bound again.
+     * Like the full update, the items loaded callback runs if anything changed.
+     */
+    fun update(items: ArrayList<T>, changed: List<Int>) {
+        emptyClosure(items.isEmpty())
+        this.items.apply {
+            clear()
+            addAll(items)
+        }
+        changed.forEach { notifyItemChanged(it) }
+        if (changed.isNotEmpty()) itemsLoadedClosure.invoke()
+    }
+
     fun insert(range: OrderedCollectionChangeSet.Range){
         emptyClosure(items.isEmpty())
         notifyItemRangeInserted(range.startIndex, range.length)
@@ -114,7 +130,7 @@ abstract class GenericAdapter<T: Identifiable<K>, K: Modelable>(private val item
     inner class ViewHolder<T: Identifiable<K>, K: Modelable>(private val binding: ViewDataBinding): RecyclerView.ViewHolder(binding.root) {
         private var afterBindClosure: (item: T, view: View, position: Int) -> Unit = { _, _, _ -> }
 
-        fun bind(item: T) {
+        fun bind(item: T) = trace(Stage.BIND) {
             item.bindings.map { binding.setVariable(it.first, it.second) }
             binding.executePendingBindings()
             afterBindClosure(item, itemView, adapterPosition)
@@ -5,9 +5,21 @@ import android.content.IntentFilter
 import com.google.firebase.crashlytics.FirebaseCrashlytics
 import com.heinrichreimer.canteenbalance.cardreader.CardBalance
 import de.htwdd.htwdresden.classes.DatabaseMigrations
+import de.htwdd.htwdresden.db.RealmLeakDetector
+import de.htwdd.htwdresden.db.RealmMaintenance
+import de.htwdd.htwdresden.db.RealmRecovery
+import de.htwdd.htwdresden.db.RealmSnapshots
+import de.htwdd.htwdresden.db.SchemaModule
+import de.htwdd.htwdresden.network.GradeRepository
 import de.htwdd.htwdresden.receivers.MensaCardReceiver
+import de.htwdd.htwdresden.ui.views.widgets.WidgetUpdates
+import de.htwdd.htwdresden.utils.AutoMute
+import de.htwdd.htwdresden.utils.extensions.error
 import de.htwdd.htwdresden.utils.extensions.handleCrashlyticsChange
+import de.htwdd.htwdresden.utils.extensions.nullWhenEmpty
 import de.htwdd.htwdresden.utils.holders.*
+import de.htwdd.htwdresden.workers.ExamResultsWorker
+import io.reactivex.schedulers.Schedulers
 import io.realm.Realm
 import io.realm.RealmConfiguration
 
@@ -21,7 +33,11 @@ class HTWApplication: Application() {
         registerReceivers()
         initializeRealm()
         initializeHolders()
+        initializeCaches()
         initializeGoogleServices()
+        initializeWorkers()
+        initializeAutoMute()
+        initializeWidgets()
     }
 
     private fun registerReceivers() {
@@ -30,12 +46,17 @@ class HTWApplication: Application() {
 
     private fun initializeRealm() {
         Realm.init(this)
+        RealmMaintenance.init(this)
         val realmConfiguration = RealmConfiguration.Builder()
             .migration(DatabaseMigrations())
-            .schemaVersion(7)
-            .deleteRealmIfMigrationNeeded()
+            .modules(SchemaModule())
+            .schemaVersion(13)
+            .compactOnLaunch(RealmMaintenance)
             .build()
         Realm.setDefaultConfiguration(realmConfiguration)
+        RealmLeakDetector.install(this)
+        RealmMaintenance.measureOpen { RealmRecovery.open { RealmSnapshots.install() } }
+        RealmMaintenance.schedule()
     }
 
     private fun initializeHolders() {
@@ -46,10 +67,45 @@ class HTWApplication: Application() {
         CryptoSharedPreferencesHolder.init(this)
     }
 
+    private fun initializeCaches() {
+        val cph = CryptoSharedPreferencesHolder.instance
+        cph.onChanged()
+            .filter { it is CryptoSharedPreferencesHolder.SubscribeType.AuthToken }
+            .startWith(CryptoSharedPreferencesHolder.SubscribeType.AuthToken)
+            .observeOn(Schedulers.io())
+            .subscribe({ GradeRepository.retainAccount(cph.getAuthToken().nullWhenEmpty) }, { error(it) })
+    }
+
     private fun initializeGoogleServices() {
         handleCrashlyticsChange()
     }
 
+    private fun initializeWorkers() {
+        val cph = CryptoSharedPreferencesHolder.instance
+        cph.onChanged()
+            .filter { it is CryptoSharedPreferencesHolder.SubscribeType.AuthToken || it is CryptoSharedPreferencesHolder.SubscribeType.ExamUpdate }
+            .startWith(CryptoSharedPreferencesHolder.SubscribeType.ExamUpdate)
+            .subscribe {
+                if (cph.hasExamUpdate() && cph.getAuthToken().nullWhenEmpty != null) {
+                    ExamResultsWorker.schedule(this)
+                } else {
+                    ExamResultsWorker.cancel(this)
+                }
+            }
+    }
+
+    private fun initializeAutoMute() {
+        AutoMute.init(this)
+        AutoMute.reschedule()
+        CryptoSharedPreferencesHolder.instance.onChanged()
+            .filter { it is CryptoSharedPreferencesHolder.SubscribeType.AutoMute }
+            .subscribe { AutoMute.reschedule(true) }
+    }
+
+    private fun initializeWidgets() {
+        WidgetUpdates.init(this)
+    }
+
     override fun onTerminate() {
         unregisterReceiver(mensaCardReceiver)
         super.onTerminate()
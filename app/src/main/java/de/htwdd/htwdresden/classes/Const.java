@@ -32,7 +32,7 @@ public final class Const {
 
     public static final class preferencesKey {
         public static final String PREFERENCES_AUTO_MUTE = "autoMute";
-        static final String PREFERENCES_AUTO_MUTE_MODE = "autoMuteMode";
+        public static final String PREFERENCES_AUTO_MUTE_MODE = "autoMuteMode";
         public static final String PREFERENCES_SEMESTERPLAN_UPDATETIME = "semesterPlanUpdateTime";
         public static final String PREFERENCES_MENSA_WEEK_LASTUPDATE = "mensaWeekLastUpdate";
         public static final String PREFERENCES_MENSA_NEXT_WEEK_LASTUPDATE = "mensaWeekLastUpdate";
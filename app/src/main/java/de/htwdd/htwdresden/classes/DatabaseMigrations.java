@@ -9,6 +9,7 @@ import java.util.Date;
 import de.htwdd.htwdresden.types.canteen.Prices;
 import io.realm.DynamicRealm;
 import io.realm.DynamicRealmObject;
+import io.realm.FieldAttribute;
 import io.realm.RealmList;
 import io.realm.RealmMigration;
 import io.realm.RealmObjectSchema;
@@ -18,6 +19,17 @@ import io.realm.RealmSchema;
  * Definition der Migrationen
  */
 public class DatabaseMigrations implements RealmMigration {
+    /**
+     * Tables of the legacy java types, referencing classes before the referenced ones
+     */
+    private static final String[] LEGACY_CLASSES = {
+            "LessonUser", "LessonRoom", "LessonWeek",
+            "Meal", "Prices", "Canteen",
+            "ExamResult",
+            "StudyYear", "StudyCourse", "StudyGroup", "StudyData",
+            "Semester", "TimePeriod"
+    };
+
     @Override
     public void migrate(@NonNull final DynamicRealm realm, long oldVersion, final long newVersion) {
         Log.d("Migration", "Alt: " + oldVersion + " Neu" + newVersion );
@@ -117,43 +129,48 @@ public class DatabaseMigrations implements RealmMigration {
             oldVersion++;
         }
 
+        // Files of schema version 7 already contain the tables and fields of steps 7 to 10
         if (oldVersion == 7) {
-            schema.create("TimetableRealm")
-                    .addField("id", String.class)
-                    .addField("moduleId", String.class)
-                    .addField("lessonTag", String.class)
-                    .addField("name", String.class)
-                    .addField("day", Long.class)
-                    .addField("beginTime", Date.class)
-                    .addField("endTime", Date.class)
-                    .addField("week", Long.class)
-                    .addRealmListField("weeksOnly", Long.class)
-                    .addField("professor", String.class)
-                    .addRealmListField("rooms", String.class)
-                    .addField("lastChanged", String.class)
-                    .addRealmListField("lessonDays", String.class)
-                    .addField("createdByUser", Boolean.class)
-                    .addField("exactDay", Date.class)
-                    .addField("weekRotation", String.class);
+            if (!schema.contains("TimetableRealm")) {
+                schema.create("TimetableRealm")
+                        .addField("id", String.class)
+                        .addField("moduleId", String.class)
+                        .addField("lessonTag", String.class)
+                        .addField("name", String.class)
+                        .addField("day", Long.class)
+                        .addField("beginTime", Date.class)
+                        .addField("endTime", Date.class)
+                        .addField("week", Long.class)
+                        .addRealmListField("weeksOnly", Long.class)
+                        .addField("professor", String.class)
+                        .addRealmListField("rooms", String.class)
+                        .addField("lastChanged", String.class)
+                        .addRealmListField("lessonDays", String.class)
+                        .addField("createdByUser", Boolean.class)
+                        .addField("exactDay", Date.class)
+                        .addField("weekRotation", String.class);
+            }
             oldVersion++;
         }
 
         if (oldVersion == 8) {
             RealmObjectSchema timetableRealmSchema = schema.get("TimetableRealm");
-            if(timetableRealmSchema!=null) {
+            if(timetableRealmSchema!=null && !timetableRealmSchema.hasField("isHidden")) {
                 timetableRealmSchema.addField("isHidden", Boolean.class);
             }
-            schema.create("CurrentSemesterRealm")
-                    .addField("startDate", Date.class)
-                    .addField("endDate", Date.class)
-                    .addRealmListField("freeDays", Date.class);
+            if (!schema.contains("CurrentSemesterRealm")) {
+                schema.create("CurrentSemesterRealm")
+                        .addField("startDate", Date.class)
+                        .addField("endDate", Date.class)
+                        .addRealmListField("freeDays", Date.class);
+            }
 
             oldVersion++;
         }
 
         if (oldVersion == 9) {
             RealmObjectSchema timetableRealmSchema = schema.get("TimetableRealm");
-            if(timetableRealmSchema!=null) {
+            if(timetableRealmSchema!=null && !timetableRealmSchema.hasField("studiumIntegrale")) {
                 timetableRealmSchema
                         .addField("studiumIntegrale", Boolean.class);
             }
@@ -162,13 +179,36 @@ public class DatabaseMigrations implements RealmMigration {
 
         if (oldVersion == 10) {
             RealmObjectSchema timetableRealmSchema = schema.get("TimetableRealm");
-            if(timetableRealmSchema!=null) {
+            if(timetableRealmSchema!=null && !timetableRealmSchema.hasField("elective")) {
                 timetableRealmSchema
                         .addField("elective", Boolean.class);
             }
             oldVersion++;
         }
 
+        if (oldVersion == 11) {
+            // Legacy types are not part of the SchemaModule anymore, drop their tables and indexes
+            for (final String className : LEGACY_CLASSES) {
+                if (schema.contains(className)) {
+                    schema.remove(className);
+                }
+            }
+            oldVersion++;
+        }
+
+        if (oldVersion == 12) {
+            // Calendar events exported from the timetable
+            if (!schema.contains("CalendarEventRealm")) {
+                schema.create("CalendarEventRealm")
+                        .addField("id", String.class, FieldAttribute.PRIMARY_KEY, FieldAttribute.REQUIRED)
+                        .addField("calendarId", long.class, FieldAttribute.INDEXED)
+                        .addField("occurrence", String.class, FieldAttribute.REQUIRED)
+                        .addField("eventId", long.class)
+                        .addField("hash", int.class);
+            }
+            oldVersion++;
+        }
+
 
         // weeksOnly in primitiven Datentyp umwandeln
         // TODO Wartet auf Umsetzung https://github.com/realm/realm-java/issues/5361
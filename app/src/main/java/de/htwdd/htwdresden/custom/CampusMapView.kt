@@ -0,0 +1,180 @@
+package de.htwdd.htwdresden.custom
+
+import android.content.Context
+import android.graphics.*
+import android.util.AttributeSet
+import android.util.LruCache
+import androidx.annotation.DrawableRes
+import com.jsibbold.zoomage.ZoomageView
+import de.htwdd.htwdresden.utils.CampusMapCache
+import de.htwdd.htwdresden.utils.CampusMapPyramid
+import de.htwdd.htwdresden.utils.extensions.error
+import io.reactivex.Single
+import io.reactivex.android.schedulers.AndroidSchedulers
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.Executors
+import kotlin.math.floor
+import kotlin.math.min
+
+/**
+ * Zoomable campus map drawn from a [CampusMapPyramid]. The smallest level covering the view width is set as image,
+ * so zoomage scales and pans it as before. Once zoomed past its resolution, only the visible tiles of a finer level are
+ * decoded with [BitmapRegionDecoder] and drawn above it.
+ */
+class CampusMapView @JvmOverloads constructor(
+    context: Context, attrs: AttributeSet? = null, defStyleAttr: Int = 0
+) : ZoomageView(context, attrs, defStyleAttr) {
+
+    companion object {
+        private const val TILE_SIZE = 512
+        private val TILE_CACHE_BYTES = min(Runtime.getRuntime().maxMemory() / 8, 32L * 1024L * 1024L).toInt()
+        // region decoding is memory bound, one thread for all maps keeps the peak at one tile
+        private val decodeScheduler = Schedulers.from(Executors.newSingleThreadExecutor())
+    }
+
+    @DrawableRes private var resId = 0
+    private var pyramid: CampusMapPyramid? = null
+    private var baseLevel = 0
+    private var tileLevel = -1
+    private var loading: Disposable? = null
+
+    // by file, only touched on the decode thread
+    private val decoders = HashMap<String, BitmapRegionDecoder>()
+    private val pending = HashSet<String>()
+    private val requests = CompositeDisposable()
+    private val tiles = object: LruCache<String, Bitmap>(TILE_CACHE_BYTES) {
+        override fun sizeOf(key: String, value: Bitmap) = value.allocationByteCount
+    }
+
+    private val paint = Paint(Paint.FILTER_BITMAP_FLAG)
+    private val values = FloatArray(9)
+    private val inverse = Matrix()
+    private val visible = RectF()
+    private val destination = RectF()
+
+    fun setCampusMap(@DrawableRes res: Int) {
+        if (res == resId) return
+        resId = res
+        reset()
+        load()
+    }
+
+    private fun load() {
+        val res = resId
+        val viewWidth = if (width > 0) width else resources.displayMetrics.widthPixels
+        loading?.dispose()
+        loading = Single.fromCallable {
+                val pyramid = CampusMapCache.pyramid(context.applicationContext, res)
+                val level = pyramid.baseLevel(viewWidth)
+                Triple(pyramid, level, BitmapFactory.decodeFile(pyramid.levels[level].path, decodeOptions()))
+            }
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe({ (pyramid, level, base) ->
+                this.pyramid = pyramid
+                baseLevel = level
+                setImageBitmap(base)
+            }, { error(it) })
+    }
+
+    private fun reset() {
+        loading?.dispose()
+        pyramid = null
+        setImageDrawable(null)
+        releaseTiles()
+    }
+
+    private fun releaseTiles() {
+        requests.clear()
+        pending.clear()
+        tiles.evictAll()
+        tileLevel = -1
+        decodeScheduler.scheduleDirect {
+            decoders.values.forEach { it.recycle() }
+            decoders.clear()
+        }
+    }
+
+    private fun decodeOptions() = BitmapFactory.Options().apply { inPreferredConfig = Bitmap.Config.RGB_565 }
+
+    @Suppress("DEPRECATION")
+    private fun decoder(path: String) = decoders.getOrPut(path) { BitmapRegionDecoder.newInstance(path, false) }
+
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+        if (resId != 0 && pyramid == null) load()
+    }
+
+    override fun onDetachedFromWindow() {
+        loading?.dispose()
+        releaseTiles()
+        super.onDetachedFromWindow()
+    }
+
+    override fun onDraw(canvas: Canvas) {
+        super.onDraw(canvas)
+        val pyramid = pyramid ?: return
+        val base = pyramid.sizes[baseLevel]
+        val matrix = imageMatrix
+        matrix.getValues(values)
+        val shownWidth = base.x * values[Matrix.MSCALE_X]
+
+        var level = baseLevel
+        while (level > 0 && pyramid.sizes[level].x < shownWidth) level--
+        if (level == baseLevel || !matrix.invert(inverse)) return
+        if (level != tileLevel) {
+            requests.clear()
+            pending.clear()
+            tileLevel = level
+        }
+
+        val size = pyramid.sizes[level]
+        val factor = size.x.toFloat() / base.x
+        visible.set(0f, 0f, (width - paddingLeft - paddingRight).toFloat(), (height - paddingTop - paddingBottom).toFloat())
+        inverse.mapRect(visible)
+        val left = floor(visible.left * factor / TILE_SIZE).toInt().coerceAtLeast(0)
+        val top = floor(visible.top * factor / TILE_SIZE).toInt().coerceAtLeast(0)
+        val right = floor(visible.right * factor / TILE_SIZE).toInt().coerceAtMost((size.x - 1) / TILE_SIZE)
+        val bottom = floor(visible.bottom * factor / TILE_SIZE).toInt().coerceAtMost((size.y - 1) / TILE_SIZE)
+
+        canvas.save()
+        canvas.translate(paddingLeft.toFloat(), paddingTop.toFloat())
+        canvas.concat(matrix)
+        for (x in left..right) for (y in top..bottom) {
+            val key = "$level/$x/$y"
+            val tile = tiles.get(key)
+            if (tile == null) {
+                requestTile(pyramid, level, x, y, key)
+                continue
+            }
+            destination.set(
+                x * TILE_SIZE / factor,
+                y * TILE_SIZE / factor,
+                (x * TILE_SIZE + tile.width) / factor,
+                (y * TILE_SIZE + tile.height) / factor
+            )
+            canvas.drawBitmap(tile, null, destination, paint)
+        }
+        canvas.restore()
+    }
+
+    private fun requestTile(pyramid: CampusMapPyramid, level: Int, x: Int, y: Int, key: String) {
+        if (!pending.add(key)) return
+        val size = pyramid.sizes[level]
+        val region = Rect(x * TILE_SIZE, y * TILE_SIZE, min((x + 1) * TILE_SIZE, size.x), min((y + 1) * TILE_SIZE, size.y))
+        val path = pyramid.levels[level].path
+        requests.add(Single.fromCallable { decoder(path).decodeRegion(region, decodeOptions()) }
+            .subscribeOn(decodeScheduler)
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe({ tile ->
+                pending.remove(key)
+                tiles.put(key, tile)
+                invalidate()
+            }, {
+                pending.remove(key)
+                error(it)
+            }))
+    }
+}
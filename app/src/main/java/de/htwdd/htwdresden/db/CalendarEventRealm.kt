@@ -0,0 +1,47 @@
+package de.htwdd.htwdresden.db
+
+import io.realm.RealmObject
+import io.realm.annotations.Index
+import io.realm.annotations.PrimaryKey
+
+/**
+ * Maps an exported lesson occurrence to the id of the event in the device calendar.
+ */
+open class CalendarEventRealm(
+    @PrimaryKey var id: String  = "",
+    @Index var calendarId: Long = 0,
+    var occurrence: String      = "",
+    var eventId: Long           = 0,
+    var hash: Int               = 0
+): RealmObject() {
+
+    companion object {
+        fun key(calendarId: Long, occurrence: String) = "$calendarId|$occurrence"
+    }
+}
+
+data class ExportedEvent(val eventId: Long, val hash: Int)
+
+fun Any.getExportedEvents(calendarId: Long): Map<String, ExportedEvent> {
+    return withRealm { realm ->
+        realm.where(CalendarEventRealm::class.java)
+            .equalTo("calendarId", calendarId)
+            .findAll()
+            .associate { it.occurrence to ExportedEvent(it.eventId, it.hash) }
+    }
+}
+
+fun Any.updateExportedEvents(calendarId: Long, exported: Map<String, ExportedEvent>, removed: Collection<String>) {
+    if (exported.isEmpty() && removed.isEmpty()) return
+    withRealmTransaction { transaction ->
+        exported.forEach { (occurrence, event) ->
+            transaction.insertOrUpdate(CalendarEventRealm(CalendarEventRealm.key(calendarId, occurrence), calendarId, occurrence, event.eventId, event.hash))
+        }
+        if (removed.isNotEmpty()) {
+            transaction.where(CalendarEventRealm::class.java)
+                .`in`("id", removed.map { CalendarEventRealm.key(calendarId, it) }.toTypedArray())
+                .findAll()
+                .deleteAllFromRealm()
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package de.htwdd.htwdresden.db
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.res.Configuration
+import de.htwdd.htwdresden.BuildConfig
+import de.htwdd.htwdresden.utils.extensions.debug
+import de.htwdd.htwdresden.utils.extensions.warn
+import io.realm.Realm
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+//-------------------------------------------------------------------------------------------------- Scoped access
+/**
+ * Runs [block] with the realm of the current thread and closes it afterwards.
+ * Realm caches one instance per thread and counts references, so nested calls share the instance.
+ * Managed objects must not escape the block, copy or map them before returning.
+ */
+inline fun <T> withRealm(block: (Realm) -> T): T {
+    val realm = RealmLeakDetector.opened(Realm.getDefaultInstance())
+    try {
+        return block(realm)
+    } finally {
+        RealmLeakDetector.closed()
+        realm.close()
+    }
+}
+
+/**
+ * Like [withRealm], [block] runs inside a transaction.
+ */
+inline fun <T> withRealmTransaction(crossinline block: (Realm) -> T): T = withRealm { realm ->
+    var result: T? = null
+    realm.executeTransaction { result = block(it) }
+    @Suppress("UNCHECKED_CAST")
+    result as T
+}
+
+/**
+ * Realm for an owner holding live results, e.g. a view model. The owner closes it with [closeRealm].
+ */
+fun openRealm(owner: Any): Realm = Realm.getDefaultInstance().also { RealmLeakDetector.owned(owner) }
+
+fun closeRealm(owner: Any, realm: Realm) {
+    RealmLeakDetector.released(owner)
+    realm.close()
+}
+
+//-------------------------------------------------------------------------------------------------- Frozen snapshots
+/**
+ * Runs [block] with a frozen realm of the latest version and releases it afterwards. Frozen realms, results and
+ * objects are immutable, can be passed to any thread and are read without copying, they must not escape the block.
+ */
+inline fun <T> withFrozenRealm(block: (Realm) -> T): T {
+    val frozen = RealmSnapshots.acquire()
+    try {
+        return block(frozen)
+    } finally {
+        RealmSnapshots.release(frozen)
+    }
+}
+
+/**
+ * Hands out frozen realms and counts their references. Realm closes all frozen realms once no live instance is open
+ * anymore, so a live instance on the main thread anchors them, it follows the latest version and pins none.
+ * Every frozen version keeps its data in the file, a version is closed as soon as its last reference is released.
+ */
+object RealmSnapshots {
+
+    private class Snapshot(val realm: Realm, var references: Int = 0)
+
+    private lateinit var anchor: Realm
+    private val snapshots = ArrayList<Snapshot>()
+
+    /**
+     * Must be called on the main thread.
+     */
+    fun install() {
+        anchor = openRealm(this)
+    }
+
+    /**
+     * Frozen realm of the latest version, to be handed back with [release]. Callers of the same version share it.
+     */
+    @Synchronized
+    fun acquire(): Realm {
+        val frozen = withRealm { it.freeze() }
+        val snapshot = snapshots.firstOrNull { it.realm === frozen }
+        if (snapshot == null) {
+            snapshots.add(Snapshot(frozen, references = 1))
+        } else {
+            frozen.close()                                                                          // Keep one realm reference per version
+            snapshot.references++
+        }
+        return frozen
+    }
+
+    @Synchronized
+    fun release(frozen: Realm) {
+        val snapshot = snapshots.firstOrNull { it.realm === frozen } ?: return
+        if (--snapshot.references > 0) return
+        snapshots.remove(snapshot)
+        frozen.close()
+    }
+}
+
+//-------------------------------------------------------------------------------------------------- Leak detector
+/**
+ * Counts the realm references taken through [withRealm] and [openRealm] per thread in debug builds.
+ * Instances open beyond those were opened with [Realm.getDefaultInstance] directly and never closed,
+ * each of them pins the version it was opened at and lets the file grow.
+ */
+object RealmLeakDetector: ComponentCallbacks2 {
+
+    private val references = ConcurrentHashMap<Long, AtomicInteger>()
+    private val owners = ConcurrentHashMap<String, AtomicInteger>()
+
+    fun install(context: Context) {
+        if (BuildConfig.DEBUG) context.registerComponentCallbacks(this)
+    }
+
+    private fun count(delta: Int) = references.getOrPut(Thread.currentThread().id) { AtomicInteger() }.addAndGet(delta)
+
+    fun opened(realm: Realm): Realm {
+        if (BuildConfig.DEBUG) count(1)
+        return realm
+    }
+
+    fun closed() {
+        if (BuildConfig.DEBUG) count(-1)
+    }
+
+    fun owned(owner: Any) {
+        if (!BuildConfig.DEBUG) return
+        count(1)
+        owners.getOrPut(owner.javaClass.simpleName) { AtomicInteger() }.incrementAndGet()
+    }
+
+    fun released(owner: Any) {
+        if (!BuildConfig.DEBUG) return
+        count(-1)
+        owners[owner.javaClass.simpleName]?.decrementAndGet()
+    }
+
+    /**
+     * Must be called on the thread to check, realm only exposes the reference count of the calling thread.
+     * Instances of other threads are compared by number of threads, realm keeps one instance per thread.
+     */
+    fun report(): String {
+        val configuration = Realm.getDefaultConfiguration() ?: return "realm not initialized"
+        val local = Realm.getLocalInstanceCount(configuration)
+        val localTracked = references[Thread.currentThread().id]?.get() ?: 0
+        val trackedThreads = references.values.count { it.get() > 0 }
+        val threads = Realm.getGlobalInstanceCount(configuration)
+        val accountedThreads = trackedThreads + if (local > 0 && localTracked == 0) 1 else 0
+        val owned = owners.filterValues { it.get() > 0 }.map { "${it.key}=${it.value.get()}" }
+        return "localLeaks=${local - localTracked} otherThreadLeaks=${threads - accountedThreads} " +
+                "threads=$threads owned=$owned fileSize=${File(configuration.path).length()}"
+    }
+
+    fun hasLeaks(): Boolean {
+        val configuration = Realm.getDefaultConfiguration() ?: return false
+        val localTracked = references[Thread.currentThread().id]?.get() ?: 0
+        val local = Realm.getLocalInstanceCount(configuration)
+        val accountedThreads = references.values.count { it.get() > 0 } + if (local > 0 && localTracked == 0) 1 else 0
+        return local > localTracked || Realm.getGlobalInstanceCount(configuration) > accountedThreads
+    }
+
+    /**
+     * Reports on the main thread when the ui is hidden, no scoped access should be running then.
+     */
+    override fun onTrimMemory(level: Int) {
+        if (level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) return
+        if (hasLeaks()) warn { "leaked realm instances, each pins a version: ${report()}" } else debug { report() }
+    }
+
+    override fun onConfigurationChanged(newConfig: Configuration) {}
+
+    override fun onLowMemory() {}
+}
@@ -0,0 +1,136 @@
+package de.htwdd.htwdresden.db
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.os.SystemClock
+import androidx.core.content.edit
+import de.htwdd.htwdresden.utils.extensions.debug
+import de.htwdd.htwdresden.utils.extensions.error
+import de.htwdd.htwdresden.utils.extensions.info
+import io.reactivex.Completable
+import io.reactivex.schedulers.Schedulers
+import io.realm.CompactOnLaunchCallback
+import io.realm.Realm
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+//-------------------------------------------------------------------------------------------------- Report
+data class RealmOpenMetrics(
+    val millis: Long,
+    val fileSizeBeforeBytes: Long,
+    val fileSizeAfterBytes: Long,
+    val previousMillis: Long,
+    val previousFileSizeBytes: Long
+)
+
+data class RealmMaintenanceReport(
+    val open: RealmOpenMetrics?,
+    val fileSizeBytes: Long,
+    val rowCounts: Map<String, Long>,
+    val orphansDeleted: Int,
+    val lastCompactionAt: Long,
+    val lastCompactionBytes: Pair<Long, Long>
+)
+
+//-------------------------------------------------------------------------------------------------- Maintenance
+/**
+ * Keeps the realm file bounded. The file only shrinks by compaction, which realm can do only before the first instance
+ * of the process is opened, so it is decided in [shouldCompact] registered with `compactOnLaunch`. The daily [schedule]d
+ * run deletes orphaned rows and records file size and row counts, space freed by it is reclaimed on the next launch.
+ */
+object RealmMaintenance: CompactOnLaunchCallback {
+
+    private const val PREFERENCES           = "htw_realm_maintenance"
+    private const val LAST_RUN              = "LAST_RUN"
+    private const val LAST_COMPACTION       = "LAST_COMPACTION"
+    private const val LAST_COMPACTION_TOTAL = "LAST_COMPACTION_TOTAL"
+    private const val LAST_COMPACTION_USED  = "LAST_COMPACTION_USED"
+    private const val LAST_OPEN_MILLIS      = "LAST_OPEN_MILLIS"
+    private const val LAST_OPEN_SIZE        = "LAST_OPEN_SIZE"
+
+    private const val MIN_COMPACTION_BYTES  = 2L * 1024L * 1024L
+    private const val MIN_USED_RATIO        = 0.5
+    private val RUN_INTERVAL                = TimeUnit.DAYS.toMillis(1)
+
+    private lateinit var preferences: SharedPreferences
+
+    @Volatile var lastReport: RealmMaintenanceReport? = null
+        private set
+    @Volatile var lastOpen: RealmOpenMetrics? = null
+        private set
+
+    fun init(context: Context) {
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+    }
+
+    /**
+     * Compacts if the file is big enough to matter and less than half of it is live data.
+     */
+    override fun shouldCompact(totalBytes: Long, usedBytes: Long): Boolean {
+        val compact = totalBytes > MIN_COMPACTION_BYTES && usedBytes.toDouble() / totalBytes < MIN_USED_RATIO
+        debug { "shouldCompact($totalBytes, $usedBytes) = $compact" }
+        if (compact && ::preferences.isInitialized) {
+            preferences.edit {
+                putLong(LAST_COMPACTION, System.currentTimeMillis())
+                putLong(LAST_COMPACTION_TOTAL, totalBytes)
+                putLong(LAST_COMPACTION_USED, usedBytes)
+            }
+        }
+        return compact
+    }
+
+    /**
+     * Measures the first open of the process, which runs migrations and compaction. The numbers of the previous launch
+     * are kept to compare, e.g. before and after a schema change.
+     */
+    fun <T> measureOpen(open: () -> T): T {
+        val file = Realm.getDefaultConfiguration()?.path?.let { File(it) }
+        val sizeBefore = file?.length() ?: 0
+        val start = SystemClock.elapsedRealtime()
+        val result = open()
+        val metrics = RealmOpenMetrics(
+            SystemClock.elapsedRealtime() - start,
+            sizeBefore,
+            file?.length() ?: 0,
+            preferences.getLong(LAST_OPEN_MILLIS, 0),
+            preferences.getLong(LAST_OPEN_SIZE, 0)
+        )
+        preferences.edit {
+            putLong(LAST_OPEN_MILLIS, metrics.millis)
+            putLong(LAST_OPEN_SIZE, metrics.fileSizeAfterBytes)
+        }
+        lastOpen = metrics
+        info { metrics }
+        return result
+    }
+
+    /**
+     * Runs the maintenance on an io thread if the last run is older than a day.
+     */
+    fun schedule() {
+        val now = System.currentTimeMillis()
+        if (now - preferences.getLong(LAST_RUN, 0) < RUN_INTERVAL) return
+        Completable.fromAction { run() }
+            .subscribeOn(Schedulers.io())
+            .subscribe({ preferences.edit { putLong(LAST_RUN, now) } }, { error(it) })
+    }
+
+    fun run(): RealmMaintenanceReport {
+        val orphans = withRealmTransaction { deleteOrphanedOccupancies(it) }
+        val report = withRealm { realm ->
+            RealmMaintenanceReport(
+                lastOpen,
+                File(realm.configuration.path).length(),
+                realm.configuration.realmObjectClasses
+                    .associate { it.simpleName to realm.where(it).count() }
+                    .toSortedMap(),
+                orphans,
+                preferences.getLong(LAST_COMPACTION, 0),
+                preferences.getLong(LAST_COMPACTION_TOTAL, 0) to preferences.getLong(LAST_COMPACTION_USED, 0)
+            )
+        }
+        lastReport = report
+        info { report }
+        return report
+    }
+}
@@ -0,0 +1,96 @@
+package de.htwdd.htwdresden.db
+
+import de.htwdd.htwdresden.ui.models.TimetableRealm
+import de.htwdd.htwdresden.utils.extensions.error
+import de.htwdd.htwdresden.utils.extensions.warn
+import io.realm.DynamicRealm
+import io.realm.DynamicRealmObject
+import io.realm.Realm
+import io.realm.RealmConfiguration
+import io.realm.RealmList
+import io.realm.exceptions.RealmMigrationNeededException
+import java.io.File
+
+/**
+ * Fallback for a file that [de.htwdd.htwdresden.classes.DatabaseMigrations] cannot bring to the current schema.
+ * The file is kept as backup next to the realm, the lessons created, hidden or chosen by the user and the exported
+ * calendar events are read from it dynamically and written into a new file. Fetched data is loaded again.
+ */
+object RealmRecovery {
+
+    private const val BACKUP_SUFFIX = ".backup"
+
+    /**
+     * Runs the first [open] of the process and runs it again on a recreated file if the migration is incomplete.
+     */
+    fun <T> open(open: () -> T): T = try {
+        open()
+    } catch (e: RealmMigrationNeededException) {
+        error(e)
+        recreate(Realm.getDefaultConfiguration() ?: throw e)
+        open()
+    }
+
+    private fun recreate(configuration: RealmConfiguration) {
+        File(configuration.path).copyTo(File(configuration.path + BACKUP_SUFFIX), overwrite = true)
+        val timetables = ArrayList<TimetableRealm>()
+        val events = ArrayList<CalendarEventRealm>()
+        try {
+            DynamicRealm.getInstance(configuration).use { realm ->
+                if (realm.schema.contains("TimetableRealm")) {
+                    realm.where("TimetableRealm").findAll()
+                        .filter { it.boolean("createdByUser") || it.boolean("elective") || it.boolean("isHidden") }
+                        .mapTo(timetables) { it.toTimetableRealm() }
+                }
+                if (realm.schema.contains("CalendarEventRealm")) {
+                    realm.where("CalendarEventRealm").findAll().mapTo(events) {
+                        CalendarEventRealm(it.getString("id"), it.getLong("calendarId"), it.getString("occurrence"),
+                            it.getLong("eventId"), it.getInt("hash"))
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            error(e)                                                                                // Still in the backup
+        }
+        Realm.deleteRealm(configuration)
+        withRealmTransaction { realm ->
+            realm.insertOrUpdate(timetables)
+            realm.insertOrUpdate(events)
+        }
+        warn { "recreated realm, kept ${timetables.size} timetables and ${events.size} calendar events" }
+    }
+
+    private fun DynamicRealmObject.has(field: String) = hasField(field) && !isNull(field)
+
+    private fun DynamicRealmObject.boolean(field: String) = has(field) && getBoolean(field)
+
+    private fun DynamicRealmObject.string(field: String) = if (has(field)) getString(field) else null
+
+    private fun DynamicRealmObject.long(field: String) = if (has(field)) getLong(field) else 0
+
+    private fun <E> DynamicRealmObject.list(field: String, type: Class<E>) =
+        RealmList<E>().apply { if (hasField(field)) addAll(getList(field, type)) }
+
+    private fun DynamicRealmObject.toTimetableRealm() = TimetableRealm(
+        id = getString("id"),
+        moduleId = string("moduleId"),
+        lessonTag = string("lessonTag") ?: "",
+        name = string("name") ?: "",
+        type = string("type") ?: "",
+        day = long("day"),
+        beginTime = if (has("beginTime")) getDate("beginTime") else null,
+        endTime = if (has("endTime")) getDate("endTime") else null,
+        week = long("week"),
+        weeksOnly = list("weeksOnly", Long::class.javaObjectType),
+        professor = string("professor"),
+        rooms = list("rooms", String::class.java),
+        lastChanged = string("lastChanged") ?: "",
+        lessonDays = list("lessonDays", String::class.java),
+        studiumIntegrale = boolean("studiumIntegrale"),
+        createdByUser = boolean("createdByUser"),
+        elective = boolean("elective"),
+        exactDay = if (has("exactDay")) getDate("exactDay") else null,
+        weekRotation = string("weekRotation"),
+        isHidden = boolean("isHidden")
+    )
+}
@@ -14,42 +14,43 @@ open class RoomRealm(
     var occupancies: RealmList<OccupancyRealm> = RealmList()
 ): RealmObject()
 
-fun RoomRealm.update(id: String, name: String, timetables: List<Timetable>): RoomRealm? {
-    verbose("update($id, $name)")
-    val realm = Realm.getDefaultInstance()
-    var roomRealm: RoomRealm? = null
-    realm.use {
-        it.executeTransaction { transaction ->
-            var result = queryFirst { equalTo("id", id) }
-            if (result == null) {
-                result = transaction.createObject(id)
-            }
-            result.name = name
+fun RoomRealm.update(id: String, name: String, timetables: List<Timetable>) {
+    verbose { "update($id, $name)" }
+    withRealmTransaction { transaction ->
+        val result = transaction.where(RoomRealm::class.java).equalTo("id", id).findFirst() ?: transaction.createObject(id)
+        result.name = name
 
-            timetables.forEach {
-                OccupancyRealm().update(it)?.let { occupancy ->
-                    if (!result.occupancies.contains(occupancy)) {
-                        result.occupancies.add(occupancy)
-                    }
-                }
+        timetables.forEach {
+            val occupancy = OccupancyRealm().update(it)
+            if (!result.occupancies.contains(occupancy)) {
+                result.occupancies.add(occupancy)
             }
-
-            transaction.insertOrUpdate(result)
-            roomRealm = result
         }
     }
-    return roomRealm
 }
 
 fun RoomRealm.delete() {
-    val realm = Realm.getDefaultInstance()
-    realm.use {
-        it.executeTransaction {
-            this.deleteFromRealm()
-        }
+    withRealmTransaction { realm ->
+        val occupancyIds = occupancies.map { it.id }
+        this.deleteFromRealm()
+        deleteOrphanedOccupancies(realm, occupancyIds)
     }
 }
 
+/**
+ * Deletes the occupancies no room links to anymore, the same lesson can be linked by several rooms.
+ * Must be called inside a transaction, only [candidates] are checked if given.
+ *
+ * @return number of deleted occupancies
+ */
+fun deleteOrphanedOccupancies(realm: Realm, candidates: Collection<String>? = null): Int {
+    val linked = realm.where(RoomRealm::class.java).findAll().flatMapTo(HashSet()) { room -> room.occupancies.map { it.id } }
+    val orphans = realm.where(OccupancyRealm::class.java).findAll()
+        .filter { (candidates == null || candidates.contains(it.id)) && !linked.contains(it.id) }
+    orphans.forEach { it.deleteFromRealm() }
+    return orphans.size
+}
+
 
 open class OccupancyRealm(
     @PrimaryKey var id: String  = "",
@@ -75,15 +76,11 @@ open class OccupancyRealm(
     }
 }
 
-fun OccupancyRealm.update(timetable: Timetable): OccupancyRealm? {
-    verbose("update($timetable)")
-    val realm = Realm.getDefaultInstance()
-    var occupancyRealm: OccupancyRealm? = null
-    realm.use { r ->
-        var result = queryFirst { equalTo("id", timetable.id.uid) }
-        if (result == null) {
-            result = r.createObject(timetable.id.uid)
-        }
+fun OccupancyRealm.update(timetable: Timetable): OccupancyRealm {
+    verbose { "update($timetable)" }
+    // Called inside the transaction of RoomRealm.update, which shares the realm of this thread
+    return withRealm { r ->
+        val result = r.where(OccupancyRealm::class.java).equalTo("id", timetable.id.uid).findFirst() ?: r.createObject(timetable.id.uid)
         result.apply {
             name = timetable.name
             type = timetable.type
@@ -94,8 +91,5 @@ fun OccupancyRealm.update(timetable: Timetable): OccupancyRealm? {
             professor = timetable.professor.defaultWhenNull("")
             weeksOnly = timetable.weeksOnly.joinToString(",")
         }
-        r.insertOrUpdate(result)
-        occupancyRealm = result
     }
-    return occupancyRealm
-}
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package de.htwdd.htwdresden.db
+
+import de.htwdd.htwdresden.ui.models.CurrentSemesterRealm
+import de.htwdd.htwdresden.ui.models.TimetableRealm
+import io.realm.annotations.RealmModule
+
+/**
+ * Classes stored in realm. The java types in `de.htwdd.htwdresden.types` still extend RealmObject but are not part of
+ * the schema anymore, [de.htwdd.htwdresden.classes.DatabaseMigrations] drops their tables.
+ */
+@RealmModule(classes = [
+    TimetableRealm::class,
+    CurrentSemesterRealm::class,
+    RoomRealm::class,
+    OccupancyRealm::class,
+    CalendarEventRealm::class
+])
+class SchemaModule
@@ -0,0 +1,124 @@
+package de.htwdd.htwdresden.network
+
+import android.Manifest
+import android.annotation.SuppressLint
+import android.content.Context
+import android.content.pm.PackageManager
+import android.location.Location
+import android.location.LocationManager
+import android.os.SystemClock
+import androidx.core.content.ContextCompat
+import com.google.gson.reflect.TypeToken
+import de.htwdd.htwdresden.ui.models.Canteen
+import de.htwdd.htwdresden.ui.models.JCanteen
+import de.htwdd.htwdresden.ui.models.Meal
+import io.reactivex.Observable
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.TimeUnit
+
+/**
+ * Canteen directory and meals shared by the canteen, meal and overview screens and the meals widget.
+ * The directory changes rarely, it is persisted and refetched after [DIRECTORY_TTL]. Meals are kept in memory per
+ * canteen and day, concurrent requests of the same day share one network call.
+ */
+object CanteenRepository {
+
+    private const val DIRECTORY_KEY     = "canteens"
+    private val DIRECTORY_TTL           = TimeUnit.DAYS.toMillis(7)
+    private val MEALS_TTL               = TimeUnit.MINUTES.toMillis(15)
+
+    // openmensa search area, the city of Dresden
+    private const val AREA_LATITUDE     = 51.058583
+    private const val AREA_LONGITUDE    = 13.738208
+    private const val AREA_DISTANCE     = 20
+    private val EXCLUDED                = listOf("Kreuzgymnasium", "Palucca Schule")
+
+    private val directoryType = object: TypeToken<List<JCanteen>>() {}
+
+    private class MealsEntry(val createdAt: Long, @Volatile var meals: List<Meal>?) {
+        lateinit var request: Observable<List<Meal>>
+        @Volatile var failed = false
+    }
+
+    private val meals = HashMap<String, MealsEntry>()
+
+    //---------------------------------------------------------------------------------------------- Directory
+    /**
+     * Canteens sorted by distance to [position], without a position by distance to the canteen of the main campus.
+     * A failed refresh falls back to the persisted directory, however old it is.
+     */
+    fun canteens(position: Pair<Double, Double>? = null, refresh: Boolean = false): Observable<List<Canteen>> {
+        return Observable.defer {
+            val cached = PersistentCache.read(DIRECTORY_KEY, directoryType)
+            if (!refresh && cached != null && cached.isFresh(DIRECTORY_TTL)) {
+                Observable.just(cached.value)
+            } else {
+                RestApi
+                    .canteenEndpoint
+                    .getCanteens(AREA_LATITUDE, AREA_LONGITUDE, AREA_DISTANCE)
+                    .map { canteens -> canteens.filterNot { canteen -> EXCLUDED.any { canteen.name.contains(it, true) } } }
+                    .doOnNext { PersistentCache.write(DIRECTORY_KEY, it) }
+                    .onErrorResumeNext { e: Throwable -> cached?.let { Observable.just(it.value) } ?: Observable.error(e) }
+            }
+        }
+            .subscribeOn(Schedulers.io())
+            .map { canteens -> sortByDistance(canteens.map { Canteen.from(it) }, position) }
+    }
+
+    private fun sortByDistance(canteens: List<Canteen>, position: Pair<Double, Double>?): List<Canteen> {
+        val reference = position
+            ?: canteens.firstOrNull { it.name.contains("reichenbach", true) }?.location
+            ?: return canteens.sorted()
+        val distance = FloatArray(1)
+        return canteens
+            .map { canteen ->
+                Location.distanceBetween(reference.first, reference.second, canteen.location.first, canteen.location.second, distance)
+                canteen to distance[0]
+            }
+            .sortedWith(compareBy({ it.second }, { it.first }))
+            .map { it.first }
+    }
+
+    /**
+     * Last known position of the network provider, only if coarse location was granted. The app never waits for a fix.
+     */
+    @SuppressLint("MissingPermission")
+    fun lastKnownPosition(context: Context): Pair<Double, Double>? {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) return null
+        val manager = context.getSystemService(Context.LOCATION_SERVICE) as? LocationManager ?: return null
+        return try {
+            manager.getLastKnownLocation(LocationManager.NETWORK_PROVIDER)?.let { it.latitude to it.longitude }
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------- Meals
+    /**
+     * Meals of a canteen on a day (yyyy-MM-dd), answered from memory for [MEALS_TTL] unless [refresh]ed.
+     */
+    @Synchronized
+    fun meals(canteenId: String, date: String, refresh: Boolean = false): Observable<List<Meal>> {
+        val key = "$canteenId/$date"
+        val now = SystemClock.elapsedRealtime()
+        meals[key]?.takeIf { !refresh && !it.failed && now - it.createdAt < MEALS_TTL }?.let { return it.request }
+
+        val entry = MealsEntry(now, meals[key]?.meals)
+        entry.request = RestApi
+            .canteenEndpoint
+            .getMeals(canteenId, date)
+            .subscribeOn(Schedulers.io())
+            .map { it.map { jMeal -> Meal.from(jMeal) } }
+            .doOnNext { entry.meals = it }
+            .doOnError { entry.failed = true }
+            .cache()
+        meals[key] = entry
+        return entry.request
+    }
+
+    /**
+     * Meals of the last successful request for the day, however old, e.g. as placeholder while refreshing.
+     */
+    @Synchronized
+    fun cachedMeals(canteenId: String, date: String) = meals["$canteenId/$date"]?.meals
+}
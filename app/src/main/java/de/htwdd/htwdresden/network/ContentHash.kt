@@ -0,0 +1,89 @@
+package de.htwdd.htwdresden.network
+
+import io.reactivex.Observable
+import okhttp3.Interceptor
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.ByteString
+import retrofit2.HttpException
+import java.net.HttpURLConnection.HTTP_NOT_MODIFIED
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Request header carrying the content hash the caller already processed, the response carries the hash of its body.
+ * Only requests with this header are hashed.
+ */
+const val CONTENT_HASH_HEADER = "X-Content-Hash"
+
+//-------------------------------------------------------------------------------------------------- Interceptor
+/**
+ * Answers with 304 and an empty body if the hash of the received body equals the one sent in [CONTENT_HASH_HEADER].
+ * The cache interceptor of OkHttp runs after this one, so cached responses are hashed as well.
+ */
+class ContentHashInterceptor: Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val knownHash = request.header(CONTENT_HASH_HEADER) ?: return chain.proceed(request)
+        val response = chain.proceed(request.newBuilder().removeHeader(CONTENT_HASH_HEADER).build())
+        val body = response.body()
+        if (!response.isSuccessful || body == null) return response
+
+        val contentType = body.contentType()
+        val content = body.use { it.source().readByteString() }
+        val hash = content.sha256().hex()
+        return if (hash == knownHash) {
+            response.newBuilder()
+                .code(HTTP_NOT_MODIFIED)
+                .message("Not Modified")
+                .body(ResponseBody.create(contentType, ByteString.EMPTY))
+                .build()
+        } else {
+            response.newBuilder()
+                .header(CONTENT_HASH_HEADER, hash)
+                .body(ResponseBody.create(contentType, content))
+                .build()
+        }
+    }
+}
+
+//-------------------------------------------------------------------------------------------------- Store
+/**
+ * Content hash per request key of the payloads an owner has already processed.
+ * Lives as long as the data derived from the payloads, so a "not modified" answer never finds the owner empty handed.
+ */
+class ContentHashStore {
+
+    private val hashes = ConcurrentHashMap<String, String>()
+
+    /** Value for [CONTENT_HASH_HEADER], empty if nothing was processed yet. */
+    operator fun get(key: String) = hashes[key] ?: ""
+
+    fun put(key: String, hash: String) {
+        hashes[key] = hash
+    }
+
+    fun forget(key: String) {
+        hashes.remove(key)
+    }
+
+    fun clear() = hashes.clear()
+}
+
+/**
+ * Emits the body of a changed payload and records its hash, completes without emitting if the payload is unchanged.
+ * Callers [ContentHashStore.forget] the key if processing the body fails, so the next fetch is processed again.
+ */
+fun <T> Observable<retrofit2.Response<T>>.unlessNotModified(store: ContentHashStore, key: String): Observable<T> {
+    return flatMap { response ->
+        val body = response.body()
+        when {
+            response.code() == HTTP_NOT_MODIFIED -> Observable.empty()
+            !response.isSuccessful || body == null -> Observable.error(HttpException(response))
+            else -> {
+                response.headers()[CONTENT_HASH_HEADER]?.let { store.put(key, it) }
+                Observable.just(body)
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package de.htwdd.htwdresden.network
+
+import com.google.gson.reflect.TypeToken
+import de.htwdd.htwdresden.ui.models.Course
+import de.htwdd.htwdresden.ui.models.Grade
+import de.htwdd.htwdresden.ui.models.JCourse
+import de.htwdd.htwdresden.ui.models.JGrade
+import de.htwdd.htwdresden.utils.extensions.info
+import io.reactivex.Observable
+import io.reactivex.schedulers.Schedulers
+import okio.ByteString
+import java.util.concurrent.TimeUnit
+
+/**
+ * Grades of one course as fetched at [fetchedAt]. Semesters without enrolled (AN) grades are complete, their results
+ * never change anymore.
+ */
+data class JCourseGrades(
+    val course: String,
+    val fetchedAt: Long,
+    val grades: List<JGrade>
+) {
+    val openSemesters get() = grades.filter { it.state == GradeRepository.ENROLLED }.mapTo(HashSet()) { it.semester }
+
+    val isComplete get() = grades.none { it.state == GradeRepository.ENROLLED }
+}
+
+/**
+ * Courses and grades of the logged in student, shared by login, grades and overview. The course list is the first of
+ * the QIS requests, it is persisted at login and on explicit refresh, so grade requests start without waiting for it.
+ * Grades are persisted per course, only courses with open exams are queried again on a refresh.
+ */
+object GradeRepository {
+
+    const val ENROLLED = "AN"
+
+    private val COURSES_TTL         = TimeUnit.DAYS.toMillis(7)
+    // open courses are answered from disk for a moment, e.g. when overview and grades ask one after the other
+    private val OPEN_TTL            = TimeUnit.MINUTES.toMillis(5)
+    // complete courses still get new exams on enrollment
+    private val COMPLETE_TTL        = TimeUnit.DAYS.toMillis(1)
+
+    private val coursesType = object: TypeToken<List<JCourse>>() {}
+    private val gradesType = object: TypeToken<List<JCourseGrades>>() {}
+
+    private const val COURSES_PREFIX    = "courses_"
+    private const val GRADES_PREFIX     = "grades_"
+
+    // the token itself is never written to disk
+    private fun authHash(auth: String) = ByteString.encodeUtf8(auth).sha256().hex().take(16)
+
+    private fun coursesKey(auth: String) = "$COURSES_PREFIX${authHash(auth)}"
+
+    private fun gradesKey(auth: String) = "$GRADES_PREFIX${authHash(auth)}"
+
+    private val Course.key get() = "$examinationRegulations/$majorNumber/$graduationNumber"
+
+    /**
+     * Removes the courses and grades persisted for any other login than [auth], all of them without a login. Called
+     * when the login changes, so the data of a previous account does not stay on the device. Unencrypted entries of
+     * earlier versions are removed as well.
+     */
+    fun retainAccount(auth: String?) {
+        val kept = auth?.let { setOf(coursesKey(it), gradesKey(it)) } ?: emptySet()
+        PersistentCache.removeAll { key, encrypted ->
+            (key.startsWith(COURSES_PREFIX) || key.startsWith(GRADES_PREFIX)) && !(encrypted && key in kept)
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------- Courses
+    /**
+     * Persisted courses while younger than [COURSES_TTL], otherwise or on [refresh] fetched and persisted.
+     * A failed fetch falls back to the persisted courses.
+     */
+    fun courses(auth: String, refresh: Boolean = false): Observable<List<Course>> {
+        return Observable.defer {
+            val cached = PersistentCache.read(coursesKey(auth), coursesType, encrypted = true)
+            if (!refresh && cached != null && cached.isFresh(COURSES_TTL)) {
+                Observable.just(cached.value)
+            } else {
+                fetchCourses(auth).onErrorResumeNext { e: Throwable ->
+                    cached?.let { Observable.just(it.value) } ?: Observable.error(e)
+                }
+            }
+        }
+            .subscribeOn(Schedulers.io())
+            .map { it.map { jCourse -> Course.from(jCourse) } }
+    }
+
+    /**
+     * Validates the login by fetching its courses, which are kept for the following grade requests.
+     */
+    fun login(auth: String): Observable<List<Course>> {
+        return fetchCourses(auth)
+            .subscribeOn(Schedulers.io())
+            .map { it.map { jCourse -> Course.from(jCourse) } }
+    }
+
+    private fun fetchCourses(auth: String): Observable<List<JCourse>> {
+        return RestApi
+            .courseEndpoint
+            .getCourses("Basic $auth")
+            .doOnNext { PersistentCache.write(coursesKey(auth), it, encrypted = true) }
+    }
+
+    //---------------------------------------------------------------------------------------------- Grades
+    /**
+     * Grades of all [courses]. Courses with enrolled grades are queried again on [refresh] or after [OPEN_TTL],
+     * complete courses only after [COMPLETE_TTL]. Rows of a queried course replace the persisted ones, a failed query
+     * keeps them.
+     */
+    fun grades(auth: String, courses: List<Course>, refresh: Boolean = false): Observable<List<Grade>> {
+        return Observable.defer {
+            val stored = PersistentCache.read(gradesKey(auth), gradesType, encrypted = true)?.value?.associateBy { it.course } ?: emptyMap()
+            val now = System.currentTimeMillis()
+            val requests = courses.map { course ->
+                val entry = stored[course.key]
+                if (entry != null && !needsQuery(entry, now, refresh)) {
+                    Observable.just(entry)
+                } else {
+                    fetchGrades(auth, course)
+                        .map { JCourseGrades(course.key, now, it) }
+                        .onErrorResumeNext { e: Throwable -> entry?.let { Observable.just(it) } ?: Observable.error(e) }
+                }
+            }
+            if (requests.isEmpty()) {
+                Observable.just(emptyList())
+            } else {
+                Observable.zip(requests) { entries -> entries.map { it as JCourseGrades } }
+                    .doOnNext { entries -> patch(auth, stored, entries) }
+            }
+        }
+            .subscribeOn(Schedulers.io())
+            .map { entries -> entries.flatMap { it.grades }.map { Grade.from(it) } }
+    }
+
+    /**
+     * Persisted grades of all courses without touching the network, e.g. to compare with the result of a refresh.
+     */
+    fun storedGrades(auth: String): List<Grade> {
+        return PersistentCache.read(gradesKey(auth), gradesType, encrypted = true)?.value?.flatMap { it.grades }?.map { Grade.from(it) } ?: emptyList()
+    }
+
+    private fun needsQuery(entry: JCourseGrades, now: Long, refresh: Boolean): Boolean {
+        val age = now - entry.fetchedAt
+        return if (entry.isComplete) age !in 0 until COMPLETE_TTL else refresh || age !in 0 until OPEN_TTL
+    }
+
+    @Synchronized
+    private fun patch(auth: String, stored: Map<String, JCourseGrades>, entries: List<JCourseGrades>) {
+        val queried = entries.filter { stored[it.course] !== it }
+        if (queried.isEmpty()) return
+        info {
+            val changedRows = queried.sumOf { entry ->
+                val before = stored[entry.course]?.grades?.toHashSet() ?: emptySet<JGrade>()
+                entry.grades.count { it !in before }
+            }
+            "grades: queried ${queried.size} of ${entries.size} courses, $changedRows changed rows, " +
+                "open semesters ${entries.flatMap { it.openSemesters }.toSortedSet()}"
+        }
+        PersistentCache.write(gradesKey(auth), (stored + queried.associateBy { it.course }).values.toList(), encrypted = true)
+    }
+
+    private fun fetchGrades(auth: String, course: Course): Observable<List<JGrade>> {
+        return RestApi
+            .gradeEndpoint
+            .getGrades(
+                "Basic $auth",
+                course.examinationRegulations.toString(),
+                course.majorNumber,
+                course.graduationNumber)
+    }
+}
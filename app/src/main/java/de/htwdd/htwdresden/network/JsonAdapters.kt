@@ -0,0 +1,451 @@
+package de.htwdd.htwdresden.network
+
+import com.google.gson.Gson
+import com.google.gson.TypeAdapter
+import com.google.gson.TypeAdapterFactory
+import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.google.gson.stream.JsonWriter
+import de.htwdd.htwdresden.ui.models.*
+
+/**
+ * Streaming, reflection-free readers for all json models of the api.
+ * Writing is delegated lazily to the reflective adapter, the app only reads these models.
+ */
+class JsonAdapterFactory: TypeAdapterFactory {
+
+    private val readers: Map<Class<*>, (JsonReader) -> Any> = mapOf(
+        JTimetable::class.java      to ::readTimetable,
+        JGrade::class.java          to ::readGrade,
+        JCourse::class.java         to ::readCourse,
+        JMeal::class.java           to ::readMeal,
+        JPrices::class.java         to ::readPrices,
+        JCanteen::class.java        to ::readCanteen,
+        JExam::class.java           to ::readExam,
+        JStudyYear::class.java      to ::readStudyYear,
+        JStudyCourse::class.java    to ::readStudyCourse,
+        JStudyGroup::class.java     to ::readStudyGroup,
+        JSemesterPlan::class.java   to ::readSemesterPlan,
+        JPeriod::class.java         to ::readPeriod,
+        JFreeDay::class.java        to ::readFreeDay,
+        JManagement::class.java     to ::readManagement,
+        JOfficeHour::class.java     to ::readOfficeHour,
+        JTime::class.java           to ::readTime,
+        JNotes::class.java          to ::readNotes,
+        JCampusPlan::class.java     to ::readCampusPlan
+    )
+
+    override fun <T> create(gson: Gson, type: TypeToken<T>): TypeAdapter<T>? {
+        val reader = readers[type.rawType] ?: return null
+        val factory = this
+        return object: TypeAdapter<T>() {
+            private val delegate by lazy { gson.getDelegateAdapter(factory, type) }
+
+            override fun write(out: JsonWriter, value: T) = delegate.write(out, value)
+
+            @Suppress("UNCHECKED_CAST")
+            override fun read(input: JsonReader): T? {
+                if (input.peek() == JsonToken.NULL) {
+                    input.nextNull()
+                    return null
+                }
+                return reader(input) as T
+            }
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------- Timetable
+    private fun readTimetable(reader: JsonReader): JTimetable {
+        var id = ""
+        var moduleId: String? = null
+        var lessonTag = ""
+        var name = ""
+        var type = ""
+        var day = 0L
+        var beginTime = ""
+        var endTime = ""
+        var week = 0L
+        var weeksOnly: List<Long> = emptyList()
+        var professor: String? = null
+        var rooms: List<String> = emptyList()
+        var studiumIntegrale = false
+        var lastChanged = ""
+        reader.readObject { field ->
+            when (field) {
+                "id"                -> id = nextStringOr("")
+                "moduleId"          -> moduleId = nextStringOrNull()
+                "lessonTag"         -> lessonTag = nextStringOr("")
+                "name"              -> name = nextStringOr("")
+                "type"              -> type = nextStringOr("")
+                "day"               -> day = nextLongOr(0)
+                "beginTime"         -> beginTime = nextStringOr("")
+                "endTime"           -> endTime = nextStringOr("")
+                "week"              -> week = nextLongOr(0)
+                "weeksOnly"         -> weeksOnly = readList { nextLongOr(0) }
+                "professor"         -> professor = nextStringOrNull()
+                "rooms"             -> rooms = readList { nextStringOr("") }
+                "studiumIntegrale"  -> studiumIntegrale = nextBooleanOr(false)
+                "lastChanged"       -> lastChanged = nextStringOr("")
+                else                -> skipValue()
+            }
+        }
+        return JTimetable(id, moduleId, lessonTag, name, type, day, beginTime, endTime, week, weeksOnly, professor, rooms, studiumIntegrale, lastChanged)
+    }
+
+    //---------------------------------------------------------------------------------------------- Grades
+    private fun readGrade(reader: JsonReader): JGrade {
+        var tries = 0L
+        var note: String? = null
+        var nr = 0L
+        var examDate: String? = null
+        var form = ""
+        var credits = 0f
+        var grade: Long? = null
+        var semester = 0L
+        var text = ""
+        var state = ""
+        var id = 0L
+        reader.readObject { field ->
+            when (field) {
+                "tries"     -> tries = nextLongOr(0)
+                "note"      -> note = nextStringOrNull()
+                "nr"        -> nr = nextLongOr(0)
+                "examDate"  -> examDate = nextStringOrNull()
+                "form"      -> form = nextStringOr("")
+                "credits"   -> credits = nextDoubleOrNull()?.toFloat() ?: 0f
+                "grade"     -> grade = nextLongOrNull()
+                "semester"  -> semester = nextLongOr(0)
+                "text"      -> text = nextStringOr("")
+                "state"     -> state = nextStringOr("")
+                "id"        -> id = nextLongOr(0)
+                else        -> skipValue()
+            }
+        }
+        return JGrade(tries, note, nr, examDate, form, credits, grade, semester, text, state, id)
+    }
+
+    private fun readCourse(reader: JsonReader): JCourse {
+        var abschlTxt = ""
+        var poVersion = 0L
+        var abschlNr = ""
+        var stgNr = ""
+        var stgTxt = ""
+        reader.readObject { field ->
+            when (field) {
+                "AbschlTxt" -> abschlTxt = nextStringOr("")
+                "POVersion" -> poVersion = nextLongOr(0)
+                "AbschlNr"  -> abschlNr = nextStringOr("")
+                "StgNr"     -> stgNr = nextStringOr("")
+                "StgTxt"    -> stgTxt = nextStringOr("")
+                else        -> skipValue()
+            }
+        }
+        return JCourse(abschlTxt, poVersion, abschlNr, stgNr, stgTxt)
+    }
+
+    //---------------------------------------------------------------------------------------------- Canteen
+    private fun readMeal(reader: JsonReader): JMeal {
+        var id = 0L
+        var name = ""
+        var category = ""
+        var prices = JPrices()
+        var notes: List<String> = emptyList()
+        reader.readObject { field ->
+            when (field) {
+                "id"        -> id = nextLongOr(0)
+                "name"      -> name = nextStringOr("")
+                "category"  -> category = nextStringOr("")
+                "prices"    -> prices = readNullable(::readPrices) ?: JPrices()
+                "notes"     -> notes = readList { nextStringOr("") }
+                else        -> skipValue()
+            }
+        }
+        return JMeal(id, name, category, prices, notes)
+    }
+
+    private fun readPrices(reader: JsonReader): JPrices {
+        var students: Double? = null
+        var employees: Double? = null
+        var pupils: Double? = null
+        var others: Double? = null
+        reader.readObject { field ->
+            when (field) {
+                "students"  -> students = nextDoubleOrNull()
+                "employees" -> employees = nextDoubleOrNull()
+                "pupils"    -> pupils = nextDoubleOrNull()
+                "others"    -> others = nextDoubleOrNull()
+                else        -> skipValue()
+            }
+        }
+        return JPrices(students, employees, pupils, others)
+    }
+
+    private fun readCanteen(reader: JsonReader): JCanteen {
+        var id = 0L
+        var name = ""
+        var city = ""
+        var address = ""
+        var coordinates: List<Double> = emptyList()
+        reader.readObject { field ->
+            when (field) {
+                "id"            -> id = nextLongOr(0)
+                "name"          -> name = nextStringOr("")
+                "city"          -> city = nextStringOr("")
+                "address"       -> address = nextStringOr("")
+                "coordinates"   -> coordinates = readList { nextDoubleOrNull() ?: 0.0 }
+                else            -> skipValue()
+            }
+        }
+        return JCanteen(id, name, city, address, coordinates)
+    }
+
+    //---------------------------------------------------------------------------------------------- Exams
+    // The exam api uses upper camel case field names
+    private fun readExam(reader: JsonReader): JExam {
+        var title = ""
+        var examType = ""
+        var studyBranch = ""
+        var day = ""
+        var startTime = ""
+        var endTime = ""
+        var examiner = ""
+        var nextChance = ""
+        var rooms: List<String> = emptyList()
+        reader.readObject { field ->
+            when (field) {
+                "Title"         -> title = nextStringOr("")
+                "ExamType"      -> examType = nextStringOr("")
+                "StudyBranch"   -> studyBranch = nextStringOr("")
+                "Day"           -> day = nextStringOr("")
+                "StartTime"     -> startTime = nextStringOr("")
+                "EndTime"       -> endTime = nextStringOr("")
+                "Examiner"      -> examiner = nextStringOr("")
+                "NextChance"    -> nextChance = nextStringOr("")
+                "Rooms"         -> rooms = readList { nextStringOr("") }
+                else            -> skipValue()
+            }
+        }
+        return JExam(title, examType, studyBranch, day, startTime, endTime, examiner, nextChance, rooms)
+    }
+
+    //---------------------------------------------------------------------------------------------- Study groups
+    private fun readStudyYear(reader: JsonReader): JStudyYear {
+        var studyYear = 0L
+        var studyCourses: List<JStudyCourse> = emptyList()
+        reader.readObject { field ->
+            when (field) {
+                "studyYear"     -> studyYear = nextLongOr(0)
+                "studyCourses"  -> studyCourses = readList { readStudyCourse(this) }
+                else            -> skipValue()
+            }
+        }
+        return JStudyYear(studyYear, studyCourses)
+    }
+
+    private fun readStudyCourse(reader: JsonReader): JStudyCourse {
+        var studyCourse = ""
+        var name = ""
+        var studyGroups: List<JStudyGroup> = emptyList()
+        reader.readObject { field ->
+            when (field) {
+                "studyCourse"   -> studyCourse = nextStringOr("")
+                "name"          -> name = nextStringOr("")
+                "studyGroups"   -> studyGroups = readList { readStudyGroup(this) }
+                else            -> skipValue()
+            }
+        }
+        return JStudyCourse(studyCourse, name, studyGroups)
+    }
+
+    private fun readStudyGroup(reader: JsonReader): JStudyGroup {
+        var studyGroup = ""
+        var name = ""
+        var grade = 0L
+        reader.readObject { field ->
+            when (field) {
+                "studyGroup"    -> studyGroup = nextStringOr("")
+                "name"          -> name = nextStringOr("")
+                "grade"         -> grade = nextLongOr(0)
+                else            -> skipValue()
+            }
+        }
+        return JStudyGroup(studyGroup, name, grade)
+    }
+
+    //---------------------------------------------------------------------------------------------- Management
+    private fun readSemesterPlan(reader: JsonReader): JSemesterPlan {
+        var year = 0L
+        var type = ""
+        var period = JPeriod("", "")
+        var freeDays: List<JFreeDay> = emptyList()
+        var lecturePeriod = JPeriod("", "")
+        var examsPeriod = JPeriod("", "")
+        var reregistration = JPeriod("", "")
+        reader.readObject { field ->
+            when (field) {
+                "year"              -> year = nextLongOr(0)
+                "type"              -> type = nextStringOr("")
+                "period"            -> period = readNullable(::readPeriod) ?: period
+                "freeDays"          -> freeDays = readList { readFreeDay(this) }
+                "lecturePeriod"     -> lecturePeriod = readNullable(::readPeriod) ?: lecturePeriod
+                "examsPeriod"       -> examsPeriod = readNullable(::readPeriod) ?: examsPeriod
+                "reregistration"    -> reregistration = readNullable(::readPeriod) ?: reregistration
+                else                -> skipValue()
+            }
+        }
+        return JSemesterPlan(year, type, period, freeDays, lecturePeriod, examsPeriod, reregistration)
+    }
+
+    private fun readPeriod(reader: JsonReader): JPeriod {
+        var beginDay = ""
+        var endDay = ""
+        reader.readObject { field ->
+            when (field) {
+                "beginDay"  -> beginDay = nextStringOr("")
+                "endDay"    -> endDay = nextStringOr("")
+                else        -> skipValue()
+            }
+        }
+        return JPeriod(beginDay, endDay)
+    }
+
+    private fun readFreeDay(reader: JsonReader): JFreeDay {
+        var name = ""
+        var beginDay = ""
+        var endDay = ""
+        reader.readObject { field ->
+            when (field) {
+                "name"      -> name = nextStringOr("")
+                "beginDay"  -> beginDay = nextStringOr("")
+                "endDay"    -> endDay = nextStringOr("")
+                else        -> skipValue()
+            }
+        }
+        return JFreeDay(name, beginDay, endDay)
+    }
+
+    private fun readManagement(reader: JsonReader): JManagement {
+        var offeredServices: List<String> = emptyList()
+        var officeHours: List<JOfficeHour> = emptyList()
+        var link = ""
+        var notes = ""
+        reader.readObject { field ->
+            when (field) {
+                "offeredServices"   -> offeredServices = readList { nextStringOr("") }
+                "officeHours"       -> officeHours = readList { readOfficeHour(this) }
+                "link"              -> link = nextStringOr("")
+                "notes"             -> notes = nextStringOr("")
+                else                -> skipValue()
+            }
+        }
+        return JManagement(offeredServices, officeHours, link, notes)
+    }
+
+    private fun readOfficeHour(reader: JsonReader): JOfficeHour {
+        var day = ""
+        var times: List<JTime> = emptyList()
+        reader.readObject { field ->
+            when (field) {
+                "day"   -> day = nextStringOr("")
+                "times" -> times = readList { readTime(this) }
+                else    -> skipValue()
+            }
+        }
+        return JOfficeHour(day, times)
+    }
+
+    private fun readTime(reader: JsonReader): JTime {
+        var begin = ""
+        var end = ""
+        reader.readObject { field ->
+            when (field) {
+                "begin" -> begin = nextStringOr("")
+                "end"   -> end = nextStringOr("")
+                else    -> skipValue()
+            }
+        }
+        return JTime(begin, end)
+    }
+
+    private fun readNotes(reader: JsonReader): JNotes {
+        var timetable = ""
+        var grades = ""
+        var exams = ""
+        reader.readObject { field ->
+            when (field) {
+                "timetable" -> timetable = nextStringOr("")
+                "grades"    -> grades = nextStringOr("")
+                "exams"     -> exams = nextStringOr("")
+                else        -> skipValue()
+            }
+        }
+        return JNotes(timetable, grades, exams)
+    }
+
+    private fun readCampusPlan(reader: JsonReader): JCampusPlan {
+        var building = ""
+        var image = 0L
+        var buildings: List<String> = emptyList()
+        reader.readObject { field ->
+            when (field) {
+                "building"  -> building = nextStringOr("")
+                "image"     -> image = nextLongOr(0)
+                "buildings" -> buildings = readList { nextStringOr("") }
+                else        -> skipValue()
+            }
+        }
+        return JCampusPlan(building, image, buildings)
+    }
+}
+
+//-------------------------------------------------------------------------------------------------- JsonReader
+private inline fun JsonReader.readObject(block: JsonReader.(name: String) -> Unit) {
+    beginObject()
+    while (hasNext()) {
+        block(nextName())
+    }
+    endObject()
+}
+
+private inline fun <T> JsonReader.readList(block: JsonReader.() -> T): List<T> {
+    if (peek() == JsonToken.NULL) {
+        nextNull()
+        return emptyList()
+    }
+    val result = ArrayList<T>()
+    beginArray()
+    while (hasNext()) {
+        result.add(block())
+    }
+    endArray()
+    return result
+}
+
+private inline fun <T> JsonReader.readNullable(block: (JsonReader) -> T): T? {
+    if (peek() == JsonToken.NULL) {
+        nextNull()
+        return null
+    }
+    return block(this)
+}
+
+private fun JsonReader.nextStringOrNull(): String? = readNullable { it.nextString() }
+
+private fun JsonReader.nextStringOr(default: String) = nextStringOrNull() ?: default
+
+private fun JsonReader.nextLongOrNull(): Long? = readNullable { it.nextLong() }
+
+private fun JsonReader.nextLongOr(default: Long) = nextLongOrNull() ?: default
+
+private fun JsonReader.nextDoubleOrNull(): Double? = readNullable { it.nextDouble() }
+
+private fun JsonReader.nextBooleanOr(default: Boolean): Boolean = when (peek()) {
+    JsonToken.NULL -> {
+        nextNull()
+        default
+    }
+    JsonToken.STRING -> nextString().toBoolean()
+    JsonToken.NUMBER -> nextInt() != 0
+    else -> nextBoolean()
+}
@@ -0,0 +1,217 @@
+package de.htwdd.htwdresden.network
+
+import com.google.gson.GsonBuilder
+import okhttp3.*
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+//-------------------------------------------------------------------------------------------------- Histogram
+/**
+ * Latency histogram with fixed millisecond buckets, the last bucket counts everything above.
+ */
+class Histogram {
+
+    companion object {
+        val BOUNDS = longArrayOf(10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000)
+    }
+
+    private val buckets = LongArray(BOUNDS.size + 1)
+    private var count = 0L
+    private var sum = 0L
+    private var max = 0L
+
+    @Synchronized
+    fun record(millis: Long) {
+        val index = BOUNDS.indexOfFirst { millis <= it }
+        buckets[if (index < 0) BOUNDS.size else index]++
+        count++
+        sum += millis
+        if (millis > max) max = millis
+    }
+
+    @Synchronized
+    fun snapshot() = HistogramSnapshot(
+        count,
+        if (count == 0L) 0 else sum / count,
+        max,
+        BOUNDS.mapIndexed { index, bound -> "<=$bound" to buckets[index] }.toMap() + (">${BOUNDS.last()}" to buckets[BOUNDS.size])
+    )
+}
+
+data class HistogramSnapshot(
+    val count: Long,
+    val averageMillis: Long,
+    val maxMillis: Long,
+    val buckets: Map<String, Long>
+)
+
+//-------------------------------------------------------------------------------------------------- Metrics
+class EndpointMetrics {
+
+    val total       = Histogram()
+    val dns         = Histogram()
+    val connect     = Histogram()
+    val tls         = Histogram()
+    val firstByte   = Histogram()
+
+    @Volatile var calls = 0L
+        private set
+    @Volatile var failures = 0L
+        private set
+    @Volatile var cacheHits = 0L
+        private set
+    @Volatile var bodyBytes = 0L
+        private set
+
+    @Synchronized
+    internal fun finish(failed: Boolean, cacheHit: Boolean, bytes: Long) {
+        calls++
+        if (failed) failures++
+        if (cacheHit) cacheHits++
+        bodyBytes += bytes
+    }
+
+    @Synchronized
+    fun snapshot() = EndpointSnapshot(
+        calls,
+        failures,
+        cacheHits,
+        if (calls == 0L) 0.0 else cacheHits.toDouble() / calls,
+        bodyBytes,
+        total.snapshot(),
+        dns.snapshot(),
+        connect.snapshot(),
+        tls.snapshot(),
+        firstByte.snapshot()
+    )
+}
+
+data class EndpointSnapshot(
+    val calls: Long,
+    val failures: Long,
+    val cacheHits: Long,
+    val cacheHitRatio: Double,
+    val bodyBytes: Long,
+    val total: HistogramSnapshot,
+    val dns: HistogramSnapshot,
+    val connect: HistogramSnapshot,
+    val tls: HistogramSnapshot,
+    val firstByte: HistogramSnapshot
+)
+
+data class NetworkMetricsSnapshot(
+    val hosts: Map<String, EndpointSnapshot>,
+    val endpoints: Map<String, EndpointSnapshot>
+)
+
+/**
+ * In-memory registry of the request metrics of all [RestApi] clients, aggregated per host and per endpoint.
+ */
+object NetworkMetrics {
+
+    private val hosts = ConcurrentHashMap<String, EndpointMetrics>()
+    private val endpoints = ConcurrentHashMap<String, EndpointMetrics>()
+
+    val listenerFactory = EventListener.Factory { call -> MetricsEventListener(call.request().url()) }
+
+    fun host(host: String): EndpointMetrics = hosts.getOrPut(host) { EndpointMetrics() }
+
+    fun endpoint(key: String): EndpointMetrics = endpoints.getOrPut(key) { EndpointMetrics() }
+
+    fun snapshot() = NetworkMetricsSnapshot(
+        hosts.mapValues { it.value.snapshot() }.toSortedMap(),
+        endpoints.mapValues { it.value.snapshot() }.toSortedMap()
+    )
+
+    fun toJson(): String = GsonBuilder().setPrettyPrinting().create().toJson(snapshot())
+
+    fun reset() {
+        hosts.clear()
+        endpoints.clear()
+    }
+
+    /**
+     * host/path with ids and dates replaced, so e.g. all meal requests of a canteen share one endpoint.
+     */
+    internal fun endpointKey(url: HttpUrl) = url.host() + url.pathSegments().joinToString("/", "/") { segment ->
+        if (segment.any { it.isDigit() } && segment.none { it.isLetter() }) "{}" else segment
+    }
+}
+
+//-------------------------------------------------------------------------------------------------- Listener
+/**
+ * Measures one call. A call which ends without acquiring a connection was answered by the cache.
+ */
+private class MetricsEventListener(url: HttpUrl): EventListener() {
+
+    private val host = NetworkMetrics.host(url.host())
+    private val endpoint = NetworkMetrics.endpoint(NetworkMetrics.endpointKey(url))
+
+    private var callStartAt = 0L
+    private var dnsStartAt = 0L
+    private var connectStartAt = 0L
+    private var secureConnectStartAt = 0L
+    private var requestStartAt = 0L
+    private var connectionAcquired = false
+    private var bytes = 0L
+
+    private fun now() = System.nanoTime()
+
+    private fun record(start: Long, select: (EndpointMetrics) -> Histogram) {
+        if (start == 0L) return
+        val millis = TimeUnit.NANOSECONDS.toMillis(now() - start)
+        select(host).record(millis)
+        select(endpoint).record(millis)
+    }
+
+    override fun callStart(call: Call) {
+        callStartAt = now()
+    }
+
+    override fun dnsStart(call: Call, domainName: String) {
+        dnsStartAt = now()
+    }
+
+    override fun dnsEnd(call: Call, domainName: String, inetAddressList: List<InetAddress>) = record(dnsStartAt) { it.dns }
+
+    override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+        connectStartAt = now()
+    }
+
+    override fun secureConnectStart(call: Call) {
+        secureConnectStartAt = now()
+    }
+
+    override fun secureConnectEnd(call: Call, handshake: Handshake?) = record(secureConnectStartAt) { it.tls }
+
+    override fun connectEnd(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy, protocol: Protocol?) = record(connectStartAt) { it.connect }
+
+    override fun connectionAcquired(call: Call, connection: Connection) {
+        connectionAcquired = true
+    }
+
+    override fun requestHeadersStart(call: Call) {
+        requestStartAt = now()
+    }
+
+    override fun responseHeadersStart(call: Call) = record(requestStartAt) { it.firstByte }
+
+    override fun responseBodyEnd(call: Call, byteCount: Long) {
+        bytes += byteCount
+    }
+
+    override fun callEnd(call: Call) = finish(false)
+
+    override fun callFailed(call: Call, ioe: IOException) = finish(true)
+
+    private fun finish(failed: Boolean) {
+        record(callStartAt) { it.total }
+        val cacheHit = !failed && !connectionAcquired
+        host.finish(failed, cacheHit, bytes)
+        endpoint.finish(failed, cacheHit, bytes)
+    }
+}
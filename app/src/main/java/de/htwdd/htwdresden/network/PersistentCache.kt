@@ -0,0 +1,83 @@
+package de.htwdd.htwdresden.network
+
+import com.google.gson.reflect.TypeToken
+import de.htwdd.htwdresden.utils.Stage
+import de.htwdd.htwdresden.utils.extensions.error
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import de.htwdd.htwdresden.utils.holders.ResourceHolder
+import de.htwdd.htwdresden.utils.traced
+import java.io.File
+import java.io.InputStream
+import java.io.OutputStream
+
+/**
+ * Api payloads persisted as json in the files directory, so they survive cache trimming. The time an entry was stored
+ * is the modification time of its file. Entries are not dropped once their TTL passed, callers still fall back to them
+ * if the network fails. Personal entries are written [encrypted] with the master key of the preferences.
+ */
+object PersistentCache {
+
+    class Entry<T>(val value: T, val storedAt: Long) {
+        fun isFresh(ttl: Long) = System.currentTimeMillis() - storedAt in 0 until ttl
+    }
+
+    private const val DIRECTORY = "api_cache"
+    private const val TEMPORARY = "tmp"
+
+    private val directory by lazy { File(ResourceHolder.instance.getFilesDirectory(), DIRECTORY).apply { mkdirs() } }
+    // encrypted files are bound to their name, they are written under the same name and moved
+    private val temporaryDirectory by lazy { File(directory, TEMPORARY).apply { mkdirs() } }
+
+    private fun file(key: String, encrypted: Boolean) = File(directory, if (encrypted) "$key.bin" else "$key.json")
+
+    private fun input(file: File, encrypted: Boolean): InputStream =
+        if (encrypted) CryptoSharedPreferencesHolder.instance.encryptedFile(file).openFileInput() else file.inputStream()
+
+    private fun output(file: File, encrypted: Boolean): OutputStream =
+        if (encrypted) CryptoSharedPreferencesHolder.instance.encryptedFile(file).openFileOutput() else file.outputStream()
+
+    @Synchronized
+    fun <T> read(key: String, type: TypeToken<T>, encrypted: Boolean = false): Entry<T>? {
+        val file = file(key, encrypted)
+        if (!file.exists()) return null
+        return try {
+            val value: T = input(file, encrypted).reader().use { RestApi.gson.fromJson(it, type.type) } ?: return null
+            Entry(value, file.lastModified())
+        } catch (e: Exception) {
+            error(e)
+            file.delete()
+            null
+        }
+    }
+
+    @Synchronized
+    fun write(key: String, value: Any, encrypted: Boolean = false) {
+        traced(Stage.PERSIST, { key }) {
+            val file = file(key, encrypted)
+            val temporary = File(temporaryDirectory, file.name).apply { delete() }
+            output(temporary, encrypted).writer().use { RestApi.gson.toJson(value, it) }
+            if (!temporary.renameTo(file)) temporary.delete()
+        }
+    }
+
+    @Synchronized
+    fun remove(key: String) {
+        file(key, false).delete()
+        file(key, true).delete()
+    }
+
+    /**
+     * Removes the entries whose key matches [predicate], e.g. the ones of a previous account.
+     */
+    @Synchronized
+    fun removeAll(predicate: (key: String, encrypted: Boolean) -> Boolean) {
+        directory.listFiles()
+            ?.filter { it.isFile && predicate(it.nameWithoutExtension, it.extension == "bin") }
+            ?.forEach { it.delete() }
+    }
+
+    @Synchronized
+    fun clear() {
+        directory.listFiles()?.forEach { it.deleteRecursively() }
+    }
+}
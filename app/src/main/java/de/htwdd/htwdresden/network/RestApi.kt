@@ -1,8 +1,9 @@
 package de.htwdd.htwdresden.network
 
 import android.annotation.SuppressLint
-import com.google.gson.FieldNamingPolicy
+import com.google.gson.Gson
 import com.google.gson.GsonBuilder
+import de.htwdd.htwdresden.BuildConfig
 import de.htwdd.htwdresden.network.endpoints.*
 import de.htwdd.htwdresden.utils.holders.ResourceHolder
 import okhttp3.Cache
@@ -26,6 +27,12 @@ object RestApi {
     private const val MENSA_URL = "https://openmensa.org/api/v2/"
 
     private val rh: ResourceHolder by lazy { ResourceHolder.instance }
+
+    /**
+     * Benchmark builds route every host to the local MockWebServer, distinguished by a path prefix.
+     */
+    private fun baseUrl(url: String, mockPath: String) =
+        if (BuildConfig.MOCK_SERVER_URL.isEmpty()) url else "${BuildConfig.MOCK_SERVER_URL}$mockPath/"
     private const val cacheSize: Long = 10L * (1024L * 1024L)
 
     private val safeOrUnsafeClient: OkHttpClient
@@ -34,17 +41,30 @@ object RestApi {
                 unsafeOkHttpClient(Cache(rh.getCacheDirectory(), cacheSize))
             } else {
                 OkHttpClient.Builder()
-                    .cache(Cache(rh.getCacheDirectory(), cacheSize)).build()
+                    .cache(Cache(rh.getCacheDirectory(), cacheSize))
+                    .addInterceptor(TracingInterceptor())
+                    .addInterceptor(ContentHashInterceptor())
+                    .eventListenerFactory(NetworkMetrics.listenerFactory)
+                    .build()
             }
         }
 
-    val docsEndpoint: DocsEndpoint by lazy {
-        val gson = GsonBuilder().create()
+    /**
+     * Shared by all endpoints, json models are read by the streaming adapters of [JsonAdapterFactory].
+     */
+    val gson: Gson by lazy {
+        GsonBuilder()
+            .registerTypeAdapterFactory(JsonAdapterFactory())
+            .create()
+    }
+
+    private val converterFactory by lazy { TracingConverterFactory(GsonConverterFactory.create(gson)) }
 
+    val docsEndpoint: DocsEndpoint by lazy {
         val retrofit = Retrofit.Builder()
-            .baseUrl(DOCS_URL)
+            .baseUrl(baseUrl(DOCS_URL, "docs"))
             .client(safeOrUnsafeClient)
-            .addConverterFactory(GsonConverterFactory.create(gson))
+            .addConverterFactory(converterFactory)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .build()
         retrofit.create(DocsEndpoint::class.java)
@@ -52,12 +72,10 @@ object RestApi {
     }
 
     val timetableEndpoint: TimetableEndpoint by lazy {
-        val gson = GsonBuilder().create()
-
         val retrofit = Retrofit.Builder()
-            .baseUrl(RUBU_URL)
+            .baseUrl(baseUrl(RUBU_URL, "rubu"))
             .client(safeOrUnsafeClient)
-            .addConverterFactory(GsonConverterFactory.create(gson))
+            .addConverterFactory(converterFactory)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .build()
         retrofit.create(TimetableEndpoint::class.java)
@@ -65,14 +83,10 @@ object RestApi {
     }
 
     val examEndpoint: ExamEndpoint by lazy {
-        val gson = GsonBuilder().apply {
-            setFieldNamingPolicy(FieldNamingPolicy.UPPER_CAMEL_CASE)
-        }.create()
-
         val retrofit = Retrofit.Builder()
-            .baseUrl(WW2_URL)
+            .baseUrl(baseUrl(WW2_URL, "www2"))
             .client(safeOrUnsafeClient)
-            .addConverterFactory(GsonConverterFactory.create(gson))
+            .addConverterFactory(converterFactory)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .build()
         retrofit.create(ExamEndpoint::class.java)
@@ -80,12 +94,10 @@ object RestApi {
     }
 
     val generalEndpoint: GeneralEndpoint by lazy {
-        val gson = GsonBuilder().create()
-
         val retrofit = Retrofit.Builder()
-            .baseUrl(RUBU_URL)
+            .baseUrl(baseUrl(RUBU_URL, "rubu"))
             .client(safeOrUnsafeClient)
-            .addConverterFactory(GsonConverterFactory.create(gson))
+            .addConverterFactory(converterFactory)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .build()
         retrofit.create(GeneralEndpoint::class.java)
@@ -93,33 +105,38 @@ object RestApi {
     }
 
     val courseEndpoint: CourseEndpoint by lazy {
-        val gson = GsonBuilder().create()
         val retrofit = Retrofit.Builder()
-            .baseUrl(QIS_URL)
-            .client(OkHttpClient.Builder().cache(Cache(rh.getCacheDirectory(), cacheSize)).build())
-            .addConverterFactory(GsonConverterFactory.create(gson))
+            .baseUrl(baseUrl(QIS_URL, "qis"))
+            .client(OkHttpClient.Builder()
+                .cache(Cache(rh.getCacheDirectory(), cacheSize))
+                .addInterceptor(TracingInterceptor())
+                .eventListenerFactory(NetworkMetrics.listenerFactory)
+                .build())
+            .addConverterFactory(converterFactory)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .build()
         retrofit.create(CourseEndpoint::class.java)
     }
 
     val gradeEndpoint: GradeEndpoint by lazy {
-        val gson = GsonBuilder().create()
         val retrofit = Retrofit.Builder()
-            .baseUrl(QIS_URL)
-            .client(OkHttpClient.Builder().cache(Cache(rh.getCacheDirectory(), cacheSize)).build())
-            .addConverterFactory(GsonConverterFactory.create(gson))
+            .baseUrl(baseUrl(QIS_URL, "qis"))
+            .client(OkHttpClient.Builder()
+                .cache(Cache(rh.getCacheDirectory(), cacheSize))
+                .addInterceptor(TracingInterceptor())
+                .eventListenerFactory(NetworkMetrics.listenerFactory)
+                .build())
+            .addConverterFactory(converterFactory)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .build()
         retrofit.create(GradeEndpoint::class.java)
     }
 
     val canteenEndpoint: CanteenEnpoint by lazy {
-        val gson = GsonBuilder().create()
         val retrofit = Retrofit.Builder()
-            .baseUrl(MENSA_URL)
+            .baseUrl(baseUrl(MENSA_URL, "mensa"))
             .client(unsafeOkHttpClient(Cache(rh.getCacheDirectory(), cacheSize)))
-            .addConverterFactory(GsonConverterFactory.create(gson))
+            .addConverterFactory(converterFactory)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .build()
         retrofit.create(CanteenEnpoint::class.java)
@@ -148,6 +165,9 @@ object RestApi {
 
         return OkHttpClient.Builder()
             .cache(cache)
+            .addInterceptor(TracingInterceptor())
+            .addInterceptor(ContentHashInterceptor())
+            .eventListenerFactory(NetworkMetrics.listenerFactory)
             .sslSocketFactory(sslContext.socketFactory, trustAllCerts[0] as X509TrustManager)
             .hostnameVerifier { _, _ -> true }.build()
     }
@@ -0,0 +1,43 @@
+package de.htwdd.htwdresden.network
+
+import com.google.gson.reflect.TypeToken
+import de.htwdd.htwdresden.ui.models.JSemesterPlan
+import de.htwdd.htwdresden.ui.models.SemesterPlan
+import io.reactivex.Observable
+import io.reactivex.schedulers.Schedulers
+import retrofit2.HttpException
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Semester plans for background work, which has no screen to show an outdated plan on. The plans are published once
+ * per semester, they are persisted and refetched after [PLANS_TTL].
+ */
+object SemesterPlanRepository {
+
+    private const val PLANS_KEY = "semesterplan"
+    private val PLANS_TTL       = TimeUnit.DAYS.toMillis(7)
+
+    private val plansType = object: TypeToken<List<JSemesterPlan>>() {}
+
+    /**
+     * A failed refresh falls back to the persisted plans, however old they are.
+     */
+    fun plans(refresh: Boolean = false): Observable<List<SemesterPlan>> {
+        return Observable.defer {
+            val cached = PersistentCache.read(PLANS_KEY, plansType)
+            if (!refresh && cached != null && cached.isFresh(PLANS_TTL)) {
+                Observable.just(cached.value)
+            } else {
+                RestApi
+                    .docsEndpoint
+                    .semesterPlan(Locale.getDefault().language, "")
+                    .map { it.body() ?: throw HttpException(it) }
+                    .doOnNext { PersistentCache.write(PLANS_KEY, it) }
+                    .onErrorResumeNext { e: Throwable -> cached?.let { Observable.just(it.value) } ?: Observable.error(e) }
+            }
+        }
+            .subscribeOn(Schedulers.io())
+            .map { it.map { jSemesterPlan -> SemesterPlan.from(jSemesterPlan) } }
+    }
+}
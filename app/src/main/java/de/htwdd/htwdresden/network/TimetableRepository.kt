@@ -0,0 +1,30 @@
+package de.htwdd.htwdresden.network
+
+import de.htwdd.htwdresden.ui.models.Timetable
+import de.htwdd.htwdresden.ui.models.hasFetchedTimetables
+import de.htwdd.htwdresden.ui.models.replaceFetchedTimetables
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder.StudyAuth
+import io.reactivex.Observable
+
+/**
+ * Timetable of the study group for every screen that shows it. The content hashes live as long as the process, the
+ * timetables derived from the payloads are stored in realm, so an unchanged timetable is read once from the network.
+ */
+object TimetableRepository {
+
+    private val contentHashes = ContentHashStore()
+
+    /**
+     * Stores the fetched timetables if they changed and emits once afterwards, completes empty if they did not.
+     */
+    fun refresh(auth: StudyAuth): Observable<Unit> {
+        val key = "timetable/${auth.group}/${auth.major}/${auth.studyYear}"
+        if (!hasFetchedTimetables()) contentHashes.forget(key)
+        return RestApi.timetableEndpoint.timetableIfChanged(auth.group, auth.major, auth.studyYear, contentHashes[key])
+            .unlessNotModified(contentHashes, key)
+            .map { jTimetables -> jTimetables.map { Timetable.from(it) } }
+            .map { it.sortedWith(compareBy { c -> c }) }
+            .map { replaceFetchedTimetables(it) }
+            .doOnError { contentHashes.forget(key) }
+    }
+}
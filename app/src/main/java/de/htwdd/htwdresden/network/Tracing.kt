@@ -0,0 +1,38 @@
+package de.htwdd.htwdresden.network
+
+import de.htwdd.htwdresden.utils.Stage
+import de.htwdd.htwdresden.utils.traced
+import okhttp3.Interceptor
+import okhttp3.RequestBody
+import okhttp3.Response
+import okhttp3.ResponseBody
+import retrofit2.Converter
+import retrofit2.Retrofit
+import java.lang.reflect.Type
+
+/**
+ * Traces a call up to the response headers as [Stage.FETCH]. The body is streamed while it is parsed, so reading it
+ * counts to [Stage.PARSE].
+ */
+class TracingInterceptor: Interceptor {
+    override fun intercept(chain: Interceptor.Chain): Response =
+        traced(Stage.FETCH, { NetworkMetrics.endpointKey(chain.request().url()) }) { chain.proceed(chain.request()) }
+}
+
+/**
+ * Traces the conversion of response bodies by [delegate] as [Stage.PARSE], labelled with the target type.
+ */
+class TracingConverterFactory(private val delegate: Converter.Factory): Converter.Factory() {
+
+    override fun responseBodyConverter(type: Type, annotations: Array<Annotation>, retrofit: Retrofit): Converter<ResponseBody, *>? {
+        val converter = delegate.responseBodyConverter(type, annotations, retrofit) ?: return null
+        return Converter<ResponseBody, Any?> { body -> traced(Stage.PARSE, { type.toString() }) { converter.convert(body) } }
+    }
+
+    override fun requestBodyConverter(
+        type: Type,
+        parameterAnnotations: Array<Annotation>,
+        methodAnnotations: Array<Annotation>,
+        retrofit: Retrofit
+    ): Converter<*, RequestBody>? = delegate.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit)
+}
@@ -5,11 +5,16 @@ import de.htwdd.htwdresden.ui.models.JMeal
 import io.reactivex.Observable
 import retrofit2.http.GET
 import retrofit2.http.Path
+import retrofit2.http.Query
 
 interface CanteenEnpoint {
 
-    @GET("canteens?near[lat]=51.058583&near[lng]=13.738208&near[dist]=20")
-    fun getCanteens(): Observable<List<JCanteen>>
+    @GET("canteens")
+    fun getCanteens(
+        @Query("near[lat]") latitude: Double,
+        @Query("near[lng]") longitude: Double,
+        @Query("near[dist]") distance: Int
+    ): Observable<List<JCanteen>>
 
     @GET("canteens/{id}/days/{date}/meals")
     fun getMeals(
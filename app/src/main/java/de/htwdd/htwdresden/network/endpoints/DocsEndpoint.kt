@@ -1,14 +1,20 @@
 package de.htwdd.htwdresden.network.endpoints
 
+import de.htwdd.htwdresden.network.CONTENT_HASH_HEADER
 import de.htwdd.htwdresden.ui.models.*
 import io.reactivex.Observable
+import retrofit2.Response
 import retrofit2.http.GET
+import retrofit2.http.Header
 import retrofit2.http.Query
 
 interface DocsEndpoint {
 
     @GET("semesterplan")
-    fun semesterPlan(@Query("language") language: String): Observable<List<JSemesterPlan>>
+    fun semesterPlan(
+        @Query("language") language: String,
+        @Header(CONTENT_HASH_HEADER) contentHash: String
+    ): Observable<Response<List<JSemesterPlan>>>
 
     @GET("semesterplan")
     suspend fun semesterPlanSuspend(): List<JSemesterPlan>
@@ -17,13 +23,22 @@ interface DocsEndpoint {
     fun campusPlan(@Query("language") language: String): Observable<List<JCampusPlan>>
 
     @GET("principalexamoffice")
-    fun principalExamOffice(@Query("language") language: String): Observable<JManagement>
+    fun principalExamOffice(
+        @Query("language") language: String,
+        @Header(CONTENT_HASH_HEADER) contentHash: String
+    ): Observable<Response<JManagement>>
 
     @GET("studentadministration")
-    fun administration(@Query("language") language: String): Observable<JManagement>
+    fun administration(
+        @Query("language") language: String,
+        @Header(CONTENT_HASH_HEADER) contentHash: String
+    ): Observable<Response<JManagement>>
 
     @GET("sturahtw")
-    fun sturaHTW(@Query("language") language: String): Observable<JManagement>
+    fun sturaHTW(
+        @Query("language") language: String,
+        @Header(CONTENT_HASH_HEADER) contentHash: String
+    ): Observable<Response<JManagement>>
 
     @GET("notes")
     fun notes(@Query("language") language: String): Observable<JNotes>
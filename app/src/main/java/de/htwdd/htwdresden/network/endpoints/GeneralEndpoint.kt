@@ -1,10 +1,13 @@
 package de.htwdd.htwdresden.network.endpoints
 
+import de.htwdd.htwdresden.network.CONTENT_HASH_HEADER
 import de.htwdd.htwdresden.ui.models.JStudyYear
 import io.reactivex.Observable
+import retrofit2.Response
 import retrofit2.http.GET
+import retrofit2.http.Header
 
 interface GeneralEndpoint {
     @GET("studyGroups.php")
-    fun studyGroups(): Observable<List<JStudyYear>>
+    fun studyGroups(@Header(CONTENT_HASH_HEADER) contentHash: String): Observable<Response<List<JStudyYear>>>
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package de.htwdd.htwdresden.network.endpoints
 
+import de.htwdd.htwdresden.network.CONTENT_HASH_HEADER
 import de.htwdd.htwdresden.ui.models.JTimetable
 import io.reactivex.Observable
+import retrofit2.Response
 import retrofit2.http.GET
+import retrofit2.http.Header
 import retrofit2.http.Query
 
 interface TimetableEndpoint {
@@ -14,6 +17,14 @@ interface TimetableEndpoint {
         @Query("StgJhr") studyYear: String
     ): Observable<List<JTimetable>>
 
+    @GET("studentTimetable.php")
+    fun timetableIfChanged(
+        @Query("StgGrp") studyGroup: String,
+        @Query("Stg") studyMajor: String,
+        @Query("StgJhr") studyYear: String,
+        @Header(CONTENT_HASH_HEADER) contentHash: String
+    ): Observable<Response<List<JTimetable>>>
+
     @GET("studentTimetable.php?all=true")
     suspend fun getAllTimetable(): List<JTimetable>
 
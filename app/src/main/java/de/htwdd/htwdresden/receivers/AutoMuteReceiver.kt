@@ -0,0 +1,25 @@
+package de.htwdd.htwdresden.receivers
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import de.htwdd.htwdresden.utils.AutoMute
+import de.htwdd.htwdresden.utils.extensions.error
+import io.reactivex.Completable
+import io.reactivex.schedulers.Schedulers
+
+/**
+ * Receives the alarm of [AutoMute] and the broadcasts which invalidate it, i.e. boot, app update and clock changes.
+ * Each applies the ringer mode for now and schedules the next transition.
+ */
+class AutoMuteReceiver: BroadcastReceiver() {
+    override fun onReceive(context: Context, intent: Intent) {
+        val result = goAsync()
+        Completable.fromAction { AutoMute.update(true) }
+            .subscribeOn(Schedulers.io())
+            .subscribe({ result.finish() }, {
+                error(it)
+                result.finish()
+            })
+    }
+}
@@ -1,13 +1,20 @@
 package de.htwdd.htwdresden.ui.models
 
+import androidx.annotation.VisibleForTesting
 import androidx.databinding.ObservableField
 import de.htwdd.htwdresden.BR
 import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.interfaces.Identifiable
 import de.htwdd.htwdresden.interfaces.Modelable
+import de.htwdd.htwdresden.utils.LessonDays
+import de.htwdd.htwdresden.utils.WallClock
 import de.htwdd.htwdresden.utils.extensions.defaultWhenNull
+import de.htwdd.htwdresden.utils.extensions.format
 import de.htwdd.htwdresden.utils.holders.StringHolder
 import java.io.Serializable
+import java.text.ParsePosition
+import java.text.SimpleDateFormat
+import java.util.*
 
 //-------------------------------------------------------------------------------------------------- Protocols
 interface Examable: Identifiable<ExamableModels>
@@ -36,10 +43,21 @@ class Exam(
     val endTime: String,
     val examiner: String,
     val nextChance: String,
-    val rooms: List<String>): Comparable<Exam> {
+    val rooms: List<String>,
+    val startInstant: Long = UNSCHEDULED,
+    val endInstant: Long = UNSCHEDULED): Comparable<Exam> {
+
+    val isScheduled: Boolean
+        get() = startInstant != UNSCHEDULED
 
     companion object {
+        const val UNSCHEDULED = Long.MAX_VALUE
+
+        private val dayPatterns = arrayOf("yyyy-MM-dd", "dd.MM.yyyy")
+
         fun from(json: JExam): Exam {
+            val startInstant = parseInstant(json.day, json.startTime)
+            val endInstant = parseInstant(json.day, json.endTime)
             return Exam(
                 json.title,
                 json.examType,
@@ -49,12 +67,30 @@ class Exam(
                 json.endTime,
                 json.examiner,
                 json.nextChance,
-                json.rooms
+                json.rooms,
+                startInstant ?: UNSCHEDULED,
+                if (startInstant != null) { endInstant?.coerceAtLeast(startInstant) ?: startInstant } else { UNSCHEDULED }
             )
         }
+
+        /**
+         * Parses the day and time strings delivered by the exam api into epoch millis.
+         * Returns null when the exam has no (known) date yet.
+         */
+        private fun parseInstant(day: String?, time: String?): Long? {
+            if (day.isNullOrBlank()) return null
+            val dayAndTime = "${day.trim()} ${time?.trim().defaultWhenNull("00:00")}"
+            dayPatterns.forEach { pattern ->
+                SimpleDateFormat("$pattern HH:mm", Locale.GERMANY)
+                    .apply { isLenient = false }
+                    .parse(dayAndTime, ParsePosition(0))
+                    ?.let { return it.time }
+            }
+            return null
+        }
     }
 
-    override fun compareTo(other: Exam) = day.compareTo(other.day)
+    override fun compareTo(other: Exam) = compareValuesBy(this, other, { it.startInstant }, { it.day })
 
     override fun equals(other: Any?) = hashCode() == other.hashCode()
 
@@ -72,6 +108,83 @@ class Exam(
     }
 }
 
+//-------------------------------------------------------------------------------------------------- Schedule
+/**
+ * Index of exams sorted by start instant, for the next exam, the exams of a week and the lessons an exam collides with.
+ * All queries are binary searches on the start instants, unscheduled exams are ignored.
+ */
+class ExamSchedule(exams: List<Exam>) {
+
+    val exams: List<Exam> = exams.filter { it.isScheduled }.sorted()
+
+    private val starts = LongArray(this.exams.size) { this.exams[it].startInstant }
+    private val maxDuration = this.exams.map { it.endInstant - it.startInstant }.maxOrNull() ?: 0L
+
+    fun next(now: Long = System.currentTimeMillis()): Exam? = exams.getOrNull(lowerBound(now))
+
+    /**
+     * Exams starting in [from, to).
+     */
+    fun between(from: Long, to: Long): List<Exam> {
+        if (to <= from) return emptyList()
+        return exams.subList(lowerBound(from), lowerBound(to))
+    }
+
+    /**
+     * Exams starting from monday to sunday of the week of [now].
+     */
+    fun thisWeek(now: Long = System.currentTimeMillis(), zone: TimeZone = TimeZone.getDefault()): List<Exam> {
+        val monday = LessonDays.weekStart(WallClock.epochDay(WallClock.toMinute(now, zone)))
+        return between(WallClock.toMillis(WallClock.minute(monday, 0), zone), WallClock.toMillis(WallClock.minute(monday + 7, 0), zone))
+    }
+
+    /**
+     * Exams overlapping the interval [begin, end).
+     */
+    fun conflictsWith(begin: Long, end: Long): List<Exam> {
+        if (exams.isEmpty() || end <= begin) return emptyList()
+        val from = lowerBound(begin - maxDuration)
+        val to = lowerBound(end)
+        return (from until to).map { exams[it] }.filter { it.endInstant > begin || it.startInstant >= begin }
+    }
+
+    /**
+     * Checks every lesson occurrence of the given frozen timetables against the exam index and returns the names of
+     * the conflicting lessons. Lesson days are read as epoch days, no date is parsed per occurrence.
+     */
+    fun conflictsWith(timetables: Collection<TimetableRealm>, zone: TimeZone = TimeZone.getDefault()): Map<Exam, List<String>> {
+        val result = LinkedHashMap<Exam, MutableList<String>>()
+        if (exams.isEmpty()) return result
+        timetables.forEach { timetable ->
+            val beginMinute = WallClock.minuteOfDay(timetable.beginTime ?: return@forEach, zone)
+            val endMinute = WallClock.minuteOfDay(timetable.endTime ?: return@forEach, zone)
+            timetable.lessonDays.forEach { lessonDay ->
+                val epochDay = LessonDays.parse(lessonDay) ?: return@forEach
+                val begin = WallClock.toMillis(WallClock.minute(epochDay, beginMinute), zone)
+                val end = WallClock.toMillis(WallClock.minute(epochDay, endMinute), zone)
+                conflictsWith(begin, end).forEach { exam ->
+                    result.getOrPut(exam) { ArrayList() }.apply { if (!contains(timetable.name)) add(timetable.name) }
+                }
+            }
+        }
+        return result
+    }
+
+    /**
+     * Index of the first exam starting at or after [instant], the number of exams if there is none.
+     */
+    @VisibleForTesting
+    internal fun lowerBound(instant: Long): Int {
+        var low = 0
+        var high = starts.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (starts[mid] < instant) low = mid + 1 else high = mid
+        }
+        return low
+    }
+}
+
 //-------------------------------------------------------------------------------------------------- Grade Warning
 class ExamWarningItem(private val text: String): Examable {
 
@@ -97,7 +210,12 @@ class ExamWarningItem(private val text: String): Examable {
 }
 
 //-------------------------------------------------------------------------------------------------- Item
-class ExamItem(private val item: Exam): Examable {
+class ExamItem(
+    private val item: Exam,
+    private val conflicts: List<String> = emptyList(),
+    private val isNext: Boolean = false,
+    private val isThisWeek: Boolean = false
+): Examable {
 
     override val viewType: Int
         get() =  R.layout.list_item_examable_exam_bindable
@@ -120,16 +238,33 @@ class ExamItem(private val item: Exam): Examable {
                 .replace("MP", sh.getString(R.string.exams_type_oral)))
             studyBranch.set(sh.getString(R.string.exams_branch, item.studyBranch.defaultWhenNull("-")))
             day.set(item.day)
-            examTime.set("${item.startTime} - ${item.endTime}")
+            examTime.set(if (item.isScheduled) {
+                "${Date(item.startInstant).format("HH:mm")} - ${Date(item.endInstant).format("HH:mm")}"
+            } else {
+                "${item.startTime} - ${item.endTime}"
+            })
             examiner.set(sh.getString(R.string.exams_examinier, item.examiner))
             nextChance.set(item.nextChance)
             rooms.set(item.rooms.joinToString(", "))
+            conflicts.set(if (this@ExamItem.conflicts.isEmpty()) null else
+                sh.getString(R.string.exams_conflicts, this@ExamItem.conflicts.joinToString(", ")))
+            upcoming.set(when {
+                isNext -> sh.getString(R.string.exams_next)
+                isThisWeek -> sh.getString(R.string.exams_this_week)
+                else -> null
+            })
         }
     }
 
     override fun equals(other: Any?) = hashCode() == other.hashCode()
 
-    override fun hashCode() = item.hashCode()
+    override fun hashCode(): Int {
+        var result = item.hashCode()
+        result = 31 * result + conflicts.hashCode()
+        result = 31 * result + isNext.hashCode()
+        result = 31 * result + isThisWeek.hashCode()
+        return result
+    }
 }
 
 //-------------------------------------------------------------------------------------------------- Modelable
@@ -142,6 +277,8 @@ class ExamModel: ExamableModels {
     val examiner    = ObservableField<String>()
     val nextChance  = ObservableField<String>()
     val rooms       = ObservableField<String>()
+    val conflicts   = ObservableField<String>()
+    val upcoming    = ObservableField<String>()
 }
 
 
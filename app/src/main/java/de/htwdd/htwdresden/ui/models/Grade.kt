@@ -234,6 +234,9 @@ class GradeItem(private val item: Grade): Gradable {
 
     override fun hashCode() =  37 * item.id.hashCode()
 
+    // hashCode identifies the exam, this changes with its result
+    val contentHash get() = item.hashCode()
+
     fun onToggle(callback: () -> Unit) {
         onToggledClosure = callback
     }
@@ -9,14 +9,15 @@ import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.databinding.TemplateFreeDayBindableBinding
 import de.htwdd.htwdresden.databinding.TemplateManagementOffersBindableBinding
 import de.htwdd.htwdresden.databinding.TemplateManagementTimesBindableBinding
+import de.htwdd.htwdresden.db.withRealmTransaction
 import de.htwdd.htwdresden.interfaces.Identifiable
 import de.htwdd.htwdresden.interfaces.Modelable
 import de.htwdd.htwdresden.utils.extensions.format
+import de.htwdd.htwdresden.utils.extensions.frozenFirst
 import de.htwdd.htwdresden.utils.extensions.getDaysBetween
 import de.htwdd.htwdresden.utils.extensions.toDate
 import de.htwdd.htwdresden.utils.holders.ContextHolder
 import de.htwdd.htwdresden.utils.holders.StringHolder
-import io.realm.Realm
 import io.realm.RealmList
 import io.realm.RealmObject
 import io.realm.annotations.PrimaryKey
@@ -107,15 +108,13 @@ open class CurrentSemesterRealm(
 }
 
 fun Any.createNewCurrentSemester(plan: SemesterPlan) {
-    val realm = Realm.getDefaultInstance()
-    realm.beginTransaction()
-    realm.delete(CurrentSemesterRealm::class.java)
-    val a = CurrentSemesterRealm.fromSemesterPlan(plan)
-    val currentSemester = realm.copyToRealmOrUpdate(a)
-    realm.commitTransaction()
+    withRealmTransaction { realm ->
+        realm.delete(CurrentSemesterRealm::class.java)
+        realm.copyToRealmOrUpdate(CurrentSemesterRealm.fromSemesterPlan(plan))
+    }
 }
 
-fun Any.getCurrentSemester() : CurrentSemesterRealm? = Realm.getDefaultInstance().where(CurrentSemesterRealm::class.java).findFirst()
+fun Any.getCurrentSemester() : CurrentSemester? = CurrentSemesterRealm::class.java.frozenFirst { CurrentSemester.fromDB(it) }
 
 //-------------------------------------------------------------------------------------------------- Concrete Models
 class SemesterPlan(
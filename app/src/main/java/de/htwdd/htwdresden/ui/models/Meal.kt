@@ -5,6 +5,7 @@ import de.htwdd.htwdresden.BR
 import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.interfaces.Identifiable
 import de.htwdd.htwdresden.interfaces.Modelable
+import de.htwdd.htwdresden.utils.KeywordMatcher
 import de.htwdd.htwdresden.utils.holders.StringHolder
 
 //-------------------------------------------------------------------------------------------------- Protocols
@@ -33,7 +34,8 @@ class Meal(
     val name: String,
     val category: String,
     val prices: Prices,
-    val notes: List<String>
+    val notes: List<String>,
+    val flags: Int = MealFlags.of(notes)
 ) {
 
     companion object {
@@ -48,6 +50,8 @@ class Meal(
         }
     }
 
+    fun has(flag: Int) = flags and flag != 0
+
     override fun equals(other: Any?) = hashCode() == other.hashCode()
 
     override fun hashCode(): Int {
@@ -89,6 +93,69 @@ class Prices(
     }
 }
 
+//-------------------------------------------------------------------------------------------------- Diet
+/**
+ * Bits of the dietary notes of a meal, classified once per meal in a single pass over its notes.
+ */
+object MealFlags {
+    const val PORK          = 1
+    const val BEEF          = 1 shl 1
+    const val VEGETARIAN    = 1 shl 2
+    const val VEGAN         = 1 shl 3
+    const val GARLIC        = 1 shl 4
+    const val ALCOHOL       = 1 shl 5
+
+    private val matcher = KeywordMatcher(mapOf(
+        "schwein"       to PORK,
+        "rind"          to BEEF,
+        "vegetarisch"   to VEGETARIAN,
+        "vegan"         to VEGAN,
+        "knoblauch"     to GARLIC,
+        "alkohol"       to ALCOHOL
+    ))
+
+    fun of(notes: List<String>) = notes.fold(0) { flags, note -> flags or matcher.match(note) }
+}
+
+/**
+ * Meals shown in the canteen, meal and overview lists. A meal passes if it has any of the [diet] bits, if set,
+ * and none of the [excluded] bits.
+ */
+data class DietFilter(val diet: Int = 0, val excluded: Int = 0) {
+
+    companion object {
+        const val VEGETARIAN_ONLY   = MealFlags.VEGETARIAN or MealFlags.VEGAN
+        const val VEGAN_ONLY        = MealFlags.VEGAN
+
+        // order of R.array.diet_filter_options
+        private const val OPTION_VEGETARIAN = 0
+        private const val OPTION_VEGAN      = 1
+        private const val OPTION_NO_PORK    = 2
+        private const val OPTION_NO_ALCOHOL = 3
+
+        fun fromSelection(indices: IntArray) = DietFilter(
+            when {
+                indices.contains(OPTION_VEGAN)      -> VEGAN_ONLY
+                indices.contains(OPTION_VEGETARIAN) -> VEGETARIAN_ONLY
+                else                                -> 0
+            },
+            (if (indices.contains(OPTION_NO_PORK)) MealFlags.PORK else 0) or
+                    (if (indices.contains(OPTION_NO_ALCOHOL)) MealFlags.ALCOHOL else 0)
+        )
+    }
+
+    val isActive get() = diet != 0 || excluded != 0
+
+    fun accepts(meal: Meal) = (diet == 0 || meal.flags and diet != 0) && meal.flags and excluded == 0
+
+    fun selection() = listOfNotNull(
+        OPTION_VEGETARIAN.takeIf { diet == VEGETARIAN_ONLY },
+        OPTION_VEGAN.takeIf { diet == VEGAN_ONLY },
+        OPTION_NO_PORK.takeIf { excluded and MealFlags.PORK != 0 },
+        OPTION_NO_ALCOHOL.takeIf { excluded and MealFlags.ALCOHOL != 0 }
+    ).toIntArray()
+}
+
 //-------------------------------------------------------------------------------------------------- Item
 class MealItem(private val item: Meal): Mealable {
 
@@ -108,12 +175,12 @@ class MealItem(private val item: Meal): Mealable {
     init {
         model.apply {
             name.set(item.name)
-            hasPork.set(item.notes.any { it.contains("schwein", true) })
-            hasBeef.set(item.notes.any { it.contains("rind", true) })
-            isVeggie.set(item.notes.any { it.contains("vegetarisch", true) })
-            isVegan.set(item.notes.any { it.contains("vegan", true) })
-            hasGarlic.set(item.notes.any { it.contains("knoblauch", true) })
-            hasAlcohol.set(item.notes.any { it.contains("alkohol", true) })
+            hasPork.set(item.has(MealFlags.PORK))
+            hasBeef.set(item.has(MealFlags.BEEF))
+            isVeggie.set(item.has(MealFlags.VEGETARIAN))
+            isVegan.set(item.has(MealFlags.VEGAN))
+            hasGarlic.set(item.has(MealFlags.GARLIC))
+            hasAlcohol.set(item.has(MealFlags.ALCOHOL))
             priceStudent.set(sh.getString(R.string.meal_price_student, item.prices.students ?: 0f ))
             priceEmployees.set(sh.getString(R.string.meal_price_employee, item.prices.employees ?: 0f ))
         }
@@ -6,12 +6,14 @@ import android.net.Uri
 import android.util.Base64
 import androidx.databinding.ObservableField
 import com.google.firebase.crashlytics.FirebaseCrashlytics
+import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.utils.extensions.debug
 import de.htwdd.htwdresden.utils.extensions.guard
 import de.htwdd.htwdresden.utils.extensions.handleCrashlyticsChange
 import de.htwdd.htwdresden.utils.extensions.runInUiThread
 import de.htwdd.htwdresden.utils.holders.ContextHolder
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import de.htwdd.htwdresden.utils.holders.StringHolder
 import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.rxkotlin.addTo
 import java.nio.charset.Charset
@@ -27,11 +29,18 @@ class SettingsModel {
     private var onResetEventsClosure: () -> Unit = {}
     private var onStudyGroupClosure: () -> Unit = {}
     private var onLoginClosure: () -> Unit = {}
+    private var onNetworkMetricsClosure: () -> Unit = {}
+    private var onDietFilterClosure: () -> Unit = {}
+    private var onAutoMuteModeClosure: () -> Unit = {}
 
     val studyGroup      = ObservableField<String>(readStudyToken(cph.getStudyToken()))
     val loginData       = ObservableField<String>(readAuthToken(cph.getAuthToken()))
     val version         = ObservableField<String>()
     val hasCrashlytics  = ObservableField<Boolean>(cph.hasCrashlytics())
+    val dietFilter      = ObservableField<String>(readDietFilter(cph.getDietFilter()))
+    val hasExamUpdate   = ObservableField<Boolean>(cph.hasExamUpdate())
+    val hasAutoMute     = ObservableField<Boolean>(cph.hasAutoMute())
+    val autoMuteMode    = ObservableField<String>(readAutoMuteMode(cph.getAutoMuteMode()))
 
     init {
         cph.onChanged().debug().runInUiThread().subscribe {
@@ -47,6 +56,19 @@ class SettingsModel {
                 is CryptoSharedPreferencesHolder.SubscribeType.Crashlytics -> {
                     hasCrashlytics.set(cph.hasCrashlytics())
                 }
+
+                is CryptoSharedPreferencesHolder.SubscribeType.DietFilter -> {
+                    dietFilter.set(readDietFilter(cph.getDietFilter()))
+                }
+
+                is CryptoSharedPreferencesHolder.SubscribeType.ExamUpdate -> {
+                    hasExamUpdate.set(cph.hasExamUpdate())
+                }
+
+                is CryptoSharedPreferencesHolder.SubscribeType.AutoMute -> {
+                    hasAutoMute.set(cph.hasAutoMute())
+                    autoMuteMode.set(readAutoMuteMode(cph.getAutoMuteMode()))
+                }
             }
         }.addTo(disposable)
     }
@@ -98,11 +120,43 @@ class SettingsModel {
 
     fun changeLogin() = onLoginClosure()
 
+    fun onNetworkMetricsClick(callback: () -> Unit) {
+        onNetworkMetricsClosure = callback
+    }
+
+    fun showNetworkMetrics(): Boolean {
+        onNetworkMetricsClosure()
+        return true
+    }
+
+    fun changeDietFilter() = onDietFilterClosure()
+
+    fun onDietFilterClick(callback: () -> Unit) {
+        onDietFilterClosure = callback
+    }
+
     fun onCrashlytics(checked: Boolean) {
         cph.setCrashlytics(checked)
         handleCrashlyticsChange()
     }
 
+    fun onExamUpdate(checked: Boolean) {
+        if (checked != cph.hasExamUpdate()) cph.setExamUpdate(checked)
+    }
+
+    fun onAutoMute(checked: Boolean) {
+        if (checked != cph.hasAutoMute()) cph.setAutoMute(checked)
+    }
+
+    fun changeAutoMuteMode() = onAutoMuteModeClosure()
+
+    fun onAutoMuteModeClick(callback: () -> Unit) {
+        onAutoMuteModeClosure = callback
+    }
+
+    private fun readAutoMuteMode(mode: Int) =
+        StringHolder.instance.getStringArray(R.array.auto_mute_mode_options).getOrElse(mode) { "" }
+
     private fun readStudyToken(token: String?): String {
         token.guard { return "" }
         val rawToken = String(Base64.decode(token, Base64.DEFAULT), Charset.forName("UTF-8"))
@@ -110,6 +164,11 @@ class SettingsModel {
         return chunks.joinToString(" | ")
     }
 
+    private fun readDietFilter(filter: DietFilter): String {
+        val options = StringHolder.instance.getStringArray(R.array.diet_filter_options)
+        return filter.selection().joinToString(", ") { options[it] }
+    }
+
     private fun readAuthToken(token: String?): String {
         token.guard { return "" }
         val rawToken = String(Base64.decode(token, Base64.DEFAULT), Charset.forName("UTF-8"))
@@ -3,16 +3,22 @@ package de.htwdd.htwdresden.ui.models
 import androidx.databinding.ObservableField
 import de.htwdd.htwdresden.BR
 import de.htwdd.htwdresden.R
+import de.htwdd.htwdresden.db.closeRealm
+import de.htwdd.htwdresden.db.openRealm
+import de.htwdd.htwdresden.db.withRealmTransaction
 import de.htwdd.htwdresden.interfaces.Identifiable
 import de.htwdd.htwdresden.interfaces.Modelable
+import de.htwdd.htwdresden.utils.AutoMute
+import de.htwdd.htwdresden.utils.LessonDays
+import de.htwdd.htwdresden.utils.Stage
 import de.htwdd.htwdresden.utils.extensions.*
 import de.htwdd.htwdresden.utils.holders.StringHolder
-import io.realm.Realm
+import de.htwdd.htwdresden.utils.traced
 import io.realm.RealmList
 import io.realm.RealmObject
+import io.realm.RealmResults
 import io.realm.annotations.PrimaryKey
 import java.util.*
-import java.util.Calendar.*
 import kotlin.collections.ArrayList
 
 //-------------------------------------------------------------------------------------------------- Protocols
@@ -82,35 +88,32 @@ class Timetable(
             )
         }
 
-        fun lessonDays(dayOfWeek: Long, weeksOnly: List<Long>): List<String> {
-            val calendar = GregorianCalendar.getInstance(Locale.GERMANY).apply {
-                set(DAY_OF_WEEK, (dayOfWeek.toInt() % 7) + 1)
-            }
-            var currentYear = calendar.get(YEAR)
-            var lastWeek = getInstance().get(WEEK_OF_YEAR)
-            val diffWeeks = weeksOnly.drop(1).zip(weeksOnly).map {
-                it.first - it.second
-            }.filter { it < 0 }
-
-            return weeksOnly.map {
-                if (diffWeeks.isNotEmpty()) {
-                    if (lastWeek - it < -10) {
-                        currentYear -= 1
-                    } else if (lastWeek - it >= kotlin.math.abs(diffWeeks.first())) {
-                        currentYear += 1
-                    }
-                }
-                lastWeek = it.toInt()
-                calendar.set(WEEK_OF_YEAR, it.toInt())
-                calendar.set(YEAR, currentYear)
-                calendar.time.format("MM-dd-yyyy")
-            }
-        }
+        fun lessonDays(dayOfWeek: Long, weeksOnly: List<Long>): List<String> =
+            lessonEpochDays(dayOfWeek, weeksOnly).map { LessonDays.format(it) }
+
+        fun lessonEpochDays(dayOfWeek: Long, weeksOnly: List<Long>) = LessonDays.epochDays(dayOfWeek, weeksOnly)
     }
 
     override fun compareTo(other: Timetable) =
         compareValuesBy(this, other, { it.day }, { it.beginTime })
 
+    /**
+     * Hash over the fields shown in a single calendar event. Unlike [hashCode] it ignores the
+     * other lesson days, so moving one occurrence does not change the hash of the others.
+     */
+    val contentHash: Int
+        get() {
+            var result = id.hashCode()
+            result = 31 * result + lessonTag.hashCode()
+            result = 31 * result + name.hashCode()
+            result = 31 * result + type.hashCode()
+            result = 31 * result + beginTime.hashCode()
+            result = 31 * result + endTime.hashCode()
+            result = 31 * result + (professor?.hashCode() ?: 0)
+            result = 31 * result + rooms.hashCode()
+            return result
+        }
+
     override fun equals(other: Any?) = hashCode() == other.hashCode()
 
     override fun hashCode(): Int {
@@ -300,6 +303,34 @@ class TimetableItem(val item: Timetable): Overviewable {
     override fun hashCode() = item.hashCode()
 }
 
+//-------------------------------------------------------------------------------------------------- Live Item
+/**
+ * Lesson row on one lesson day, the lesson is loaded from the live results only when the row is bound.
+ * [revision] counts the changes realm reported for the lesson, a changed lesson is a different row and bound again.
+ */
+class LiveTimetableItem(val id: String, private val day: String, private val revision: Int, private val load: (id: String) -> Timetable?): Timetableable {
+
+    private val delegate by lazy { load(id)?.let { TimetableItem(it) } }
+
+    val item: Timetable?
+        get() = delegate?.item
+
+    override val viewType: Int
+        get() = R.layout.list_item_timetable_bindable
+
+    override val bindings: ArrayList<Pair<Int, Modelable>>
+        get() = delegate?.bindings ?: ArrayList()
+
+    override fun equals(other: Any?) = hashCode() == other.hashCode()
+
+    override fun hashCode(): Int {
+        var result = id.hashCode()
+        result = 31 * result + day.hashCode()
+        result = 31 * result + revision
+        return result
+    }
+}
+
 //-------------------------------------------------------------------------------------------------- Header Item
 class TimetableHeaderItem(private val header: String, private val subheader: Date): Timetableable {
 
@@ -395,114 +426,129 @@ class TimetableFreeModel: Modelable {
 }
 
 fun TimetableRealm.update(timetable: Timetable, callback: (() -> Unit)?) {
-    verbose("update($timetable)")
-    val realm = Realm.getDefaultInstance()
-    realm.use { r ->
-        r.executeTransaction { transaction ->
-            var result = TimetableRealm.fromTimetable(timetable)
-            r.insertOrUpdate(result)
+    verbose { "update($timetable)" }
+    traced(Stage.PERSIST, { "timetable ${timetable.id}" }) {
+        withRealmTransaction { transaction ->
+            transaction.insertOrUpdate(TimetableRealm.fromTimetable(timetable))
             callback?.invoke()
         }
     }
-//    return timetableRealm
+    AutoMute.reschedule()
 }
 
 fun TimetableRealm.updateAsync(timetable: Timetable, callback: (() -> Unit)?) {
-    verbose("update($timetable)")
-    val realm = Realm.getDefaultInstance()
-    // Asynchronously update objects on a background thread
+    verbose { "update($timetable)" }
+    val realm = openRealm(this)
+    // Asynchronously update objects on a background thread, the realm stays open until the transaction is done
     realm.executeTransactionAsync({ bgRealm ->
-        val timetableRealm = bgRealm.copyToRealmOrUpdate(TimetableRealm.fromTimetable(timetable))
-    }, Realm.Transaction.OnSuccess {
+        bgRealm.copyToRealmOrUpdate(TimetableRealm.fromTimetable(timetable))
+    }, {
+        closeRealm(this, realm)
+        AutoMute.reschedule()
         callback?.invoke()
+    }, {
+        closeRealm(this, realm)
+        error(it)
     })
 }
 
 fun TimetableRealm.delete() {
-    val realm = Realm.getDefaultInstance()
-    realm.use {
-        it.executeTransaction {
-            this.deleteFromRealm()
-        }
+    withRealmTransaction {
+        this.deleteFromRealm()
     }
+    AutoMute.reschedule()
 }
 
-fun Any.getTimetableById(id: String) : Timetable? {
-    val realm = Realm.getDefaultInstance()
-    var timetableRealm: TimetableRealm? = null
-    timetableRealm = realm.where(TimetableRealm::class.java).equalTo("id", id).findFirst()
-    var timetable: Timetable? = null
-    timetableRealm?.let {
-        timetable = TimetableRealm.toTimetable(it)
-    }
-    return timetable
-}
+fun Any.getTimetableById(id: String) : Timetable? =
+    TimetableRealm::class.java.frozenFirst({ equalTo("id", id) }) { it?.let { timetable -> TimetableRealm.toTimetable(timetable) } }
 
 fun Any.deleteAllTimetable() {
-    val realm = Realm.getDefaultInstance()
-    realm.use {
-        it.executeTransaction {
-            it.delete(TimetableRealm::class.java)
-        }
+    withRealmTransaction {
+        it.delete(TimetableRealm::class.java)
     }
+    AutoMute.reschedule()
 }
 
 fun Any.deleteAllIfNotCreatedByUserOrElective() {
-    val realm = Realm.getDefaultInstance()
-    realm.use {
-        it.executeTransaction {
-            val result = realm.where(TimetableRealm::class.java)
+    withRealmTransaction { realm ->
+        realm.where(TimetableRealm::class.java)
+            .equalTo("createdByUser", false)
+            .and()
+            .equalTo("elective", false)
+            .findAll()
+            .deleteAllFromRealm()
+    }
+}
+
+/**
+ * Replaces the timetables fetched from the api with [timetables] in one transaction. Unchanged rows are not written,
+ * only lessons which are gone are deleted, user created ones and electives are kept. The hidden flag survives.
+ */
+fun Any.replaceFetchedTimetables(timetables: List<Timetable>) {
+    traced(Stage.PERSIST, { "${timetables.size} timetables" }) {
+        withRealmTransaction { realm ->
+            val stored = realm.where(TimetableRealm::class.java)
                 .equalTo("createdByUser", false)
                 .and()
                 .equalTo("elective", false)
                 .findAll()
-            result.deleteAllFromRealm()
+                .associateBy { it.id }
+            val hiddenIds = realm.where(TimetableRealm::class.java).equalTo("isHidden", true).findAll().mapTo(HashSet()) { it.id }
+            val fetchedIds = HashSet<String>()
+
+            timetables.forEach { timetable ->
+                fetchedIds.add(timetable.id)
+                if (hiddenIds.contains(timetable.id)) timetable.isHidden = true
+                val current = stored[timetable.id]
+                if (current == null || TimetableRealm.toTimetable(current) != timetable) {
+                    realm.insertOrUpdate(TimetableRealm.fromTimetable(timetable))
+                }
+            }
+            stored.values.filter { !fetchedIds.contains(it.id) }.forEach { it.deleteFromRealm() }
         }
     }
+    AutoMute.reschedule()
 }
 
 fun Any.deleteAllElectives() {
-    val realm = Realm.getDefaultInstance()
-    realm.use {
-        it.executeTransaction {
-            val result = realm.where(TimetableRealm::class.java)
-                .contains("type", "w")
-                .contains("type", "Modul(SI)")
-                .findAll()
-            result.deleteAllFromRealm()
-        }
+    withRealmTransaction { realm ->
+        realm.where(TimetableRealm::class.java)
+            .contains("type", "w")
+            .contains("type", "Modul(SI)")
+            .findAll()
+            .deleteAllFromRealm()
     }
+    AutoMute.reschedule()
 }
 
 fun Any.deleteById(id: String) {
-    val realm = Realm.getDefaultInstance()
-    realm.use {
-        it.executeTransaction {
-            val result = realm.where(TimetableRealm::class.java).equalTo("id", id).findFirst()
-            result?.deleteFromRealm()
-        }
+    withRealmTransaction { realm ->
+        realm.where(TimetableRealm::class.java).equalTo("id", id).findFirst()?.deleteFromRealm()
     }
+    AutoMute.reschedule()
 }
 
-fun Any.getNotHiddenTimetables() : List<Timetable> {
-   val list = Realm.getDefaultInstance().where(TimetableRealm::class.java).findAll().map { TimetableRealm.toTimetable(
-       it
-   ) }
-    return list.filter { !it.isHidden }
-}
+fun Any.getNotHiddenTimetables() : List<Timetable> = withNotHiddenTimetableRealms { timetables -> timetables.map { TimetableRealm.toTimetable(it) } }
 
-fun Any.getAllTimetables() : List<Timetable> {
-    return Realm.getDefaultInstance().where(TimetableRealm::class.java).findAll().map { TimetableRealm.toTimetable(
-        it
-    ) }
-}
+/**
+ * Reads the frozen not hidden timetables without a copy, to use their fields directly or to convert only the ones
+ * needed. The timetables must not escape [read].
+ */
+inline fun <R> Any.withNotHiddenTimetableRealms(read: (RealmResults<TimetableRealm>) -> R): R =
+    TimetableRealm::class.java.frozenAll({ equalTo("isHidden", false) }, read)
 
-fun Any.getHiddenTimetables() : List<String> {
-    val list = Realm.getDefaultInstance().where(TimetableRealm::class.java).findAll().map { TimetableRealm.toTimetable(
-        it
-    ) }
-    return list.filter { it.isHidden }.map {it.id}
-}
+fun Any.getAllTimetables() : List<Timetable> = TimetableRealm::class.java.frozenAll { timetables -> timetables.map { TimetableRealm.toTimetable(it) } }
+
+/**
+ * Whether timetables fetched from the api are stored, user created ones and electives are not counted.
+ */
+fun Any.hasFetchedTimetables(): Boolean = TimetableRealm::class.java.frozenAll({
+    equalTo("createdByUser", false)
+    and()
+    equalTo("elective", false)
+}) { it.isNotEmpty() }
+
+fun Any.getHiddenTimetables() : List<String> = TimetableRealm::class.java.frozenAll({ equalTo("isHidden", true) }) { timetables -> timetables.map { it.id } }
 
 fun Timetable.createDescriptionForCalendar() : String {
     val content = ArrayList<String>()
@@ -1,6 +1,5 @@
 package de.htwdd.htwdresden.ui.viewmodels.fragments
 
-import android.util.Log
 import androidx.databinding.ObservableField
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
@@ -261,8 +260,8 @@ class CalenderAddEventViewModel(private val lessonId: String) : ViewModel() {
         if(semesterPlan!=null) {
             createNewCurrentSemester(semesterPlan)
         }
-        val currentSemester = CurrentSemester.fromDB(getCurrentSemester())
-        Log.i("CurrentSemester", currentSemester.toString())
+        val currentSemester = getCurrentSemester()
+        info { "current semester $currentSemester" }
         val weeksOfYear = Calendar.getInstance().getActualMaximum(Calendar.WEEK_OF_YEAR);
         val weekDay = sh.getStringArray(R.array.days).indexOf(lessonWeekDay.get()) + 1.toLong()
         val weeksOnly = calculateWeeksOnly(weekDay, currentSemester)
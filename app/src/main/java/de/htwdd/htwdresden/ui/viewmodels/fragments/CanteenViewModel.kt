@@ -2,26 +2,32 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 
 import androidx.lifecycle.ViewModel
 import de.htwdd.htwdresden.adapter.Canteens
-import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.network.CanteenRepository
 import de.htwdd.htwdresden.ui.models.Canteen
 import de.htwdd.htwdresden.ui.models.CanteenItem
-import de.htwdd.htwdresden.ui.models.Meal
 import de.htwdd.htwdresden.utils.extensions.format
 import de.htwdd.htwdresden.utils.extensions.runInThread
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
 import io.reactivex.Observable
-import io.reactivex.schedulers.Schedulers
 import java.util.*
 import kotlin.collections.ArrayList
 
 class CanteenViewModel: ViewModel() {
 
+    /**
+     * Canteens sorted by distance to [position]. The directory and today's meals come from [CanteenRepository],
+     * so only meals older than its TTL or a [refresh] hit the network.
+     */
     @Suppress("UNCHECKED_CAST")
-    fun request(): Observable<Canteens> {
-        return requestCanteens()
+    fun request(position: Pair<Double, Double>?, refresh: Boolean = false): Observable<Canteens> {
+        val filter = CryptoSharedPreferencesHolder.instance.getDietFilter()
+        val today = Date().format("yyyy-MM-dd")
+        return CanteenRepository.canteens(position)
             .runInThread()
             .flatMap { canteens ->
                 val requests = canteens.map { canteen ->
-                    requestMeals(canteen.id.toString(), Date().format("yyyy-MM-dd"))
+                    CanteenRepository.meals(canteen.id.toString(), today, refresh)
+                        .map { meals -> meals.filter { filter.accepts(it) } }
                         .onErrorReturn { ArrayList() }
                         .map {
                             canteen.apply {
@@ -38,22 +44,4 @@ class CanteenViewModel: ViewModel() {
             }
             .map { it.map { canteen -> CanteenItem(canteen) }.toCollection(ArrayList()) as Canteens }
     }
-
-    private fun requestCanteens(): Observable<List<Canteen>> {
-        return RestApi
-            .canteenEndpoint
-            .getCanteens()
-            .runInThread(Schedulers.io())
-            .map { it.map { jCanteen -> Canteen.from(jCanteen) }.sortedWith(compareBy { c -> c }) }
-            .map { it.sortedBy { canteen -> !canteen.name.contains("reichenbach", ignoreCase = true) } }
-            .map { p -> p.filterNot { it.name.contains( "Kreuzgymnasium", ignoreCase = true) || it.name.contains("Palucca Schule", ignoreCase = true)}}
-    }
-
-    private fun requestMeals(id: String, date: String): Observable<List<Meal>> {
-        return RestApi
-            .canteenEndpoint
-            .getMeals(id, date)
-            .runInThread(Schedulers.io())
-            .map { it.map { jMeal -> Meal.from(jMeal) } }
-    }
-}
\ No newline at end of file
+}
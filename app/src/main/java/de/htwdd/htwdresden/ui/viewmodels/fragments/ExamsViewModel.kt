@@ -5,10 +5,14 @@ import de.htwdd.htwdresden.adapter.Exams
 import de.htwdd.htwdresden.network.RestApi
 import de.htwdd.htwdresden.ui.models.Exam
 import de.htwdd.htwdresden.ui.models.ExamItem
+import de.htwdd.htwdresden.ui.models.ExamSchedule
 import de.htwdd.htwdresden.ui.models.ExamWarningItem
 import de.htwdd.htwdresden.ui.models.TimetableWarningItem
+import de.htwdd.htwdresden.ui.models.withNotHiddenTimetableRealms
+import de.htwdd.htwdresden.utils.Stage
 import de.htwdd.htwdresden.utils.extensions.runInThread
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import de.htwdd.htwdresden.utils.traced
 import io.reactivex.Observable
 import io.reactivex.schedulers.Schedulers
 import java.util.*
@@ -25,14 +29,21 @@ class ExamsViewModel: ViewModel() {
         return RestApi.examEndpoint.exams(auth.graduation, auth.major, auth.studyYear, auth.group)
             .runInThread(Schedulers.io())
             .map { jExams -> jExams.map { jExam -> Exam.from(jExam) } }
-            .map { it.sortedWith(compareBy { it }) }
-            .map { exams ->
-                val result = Exams()
-                if (requestNotes().blockingSingle().isNotEmpty()){
-                    result.add(ExamWarningItem(requestNotes().blockingSingle()))
+            .map { it.sorted() }
+            .zipWith(requestNotes().onErrorReturnItem(""), { exams, notes -> exams to notes })
+            .map { (exams, notes) ->
+                val schedule = ExamSchedule(exams)
+                val conflicts = withNotHiddenTimetableRealms { schedule.conflictsWith(it) }
+                val next = schedule.next()
+                val thisWeek = schedule.thisWeek().toHashSet()
+                traced(Stage.MAP, { "${exams.size} exams" }) {
+                    val result = Exams()
+                    if (notes.isNotEmpty()){
+                        result.add(ExamWarningItem(notes))
+                    }
+                    result.addAll(exams.map { ExamItem(it, conflicts[it] ?: emptyList(), it === next, it in thisWeek) }.toCollection(ArrayList()) as Exams)
+                    result
                 }
-                result.addAll(exams.map { ExamItem(it) }.toCollection(ArrayList()) as Exams)
-                result
             }
 
     }
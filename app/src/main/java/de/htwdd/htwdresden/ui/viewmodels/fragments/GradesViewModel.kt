@@ -3,35 +3,40 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 import androidx.lifecycle.ViewModel
 import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.adapter.Grades
+import de.htwdd.htwdresden.network.GradeRepository
 import de.htwdd.htwdresden.network.RestApi
 import de.htwdd.htwdresden.ui.models.*
+import de.htwdd.htwdresden.utils.Stage
 import de.htwdd.htwdresden.utils.extensions.runInThread
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
 import de.htwdd.htwdresden.utils.holders.StringHolder
+import de.htwdd.htwdresden.utils.traced
 import io.reactivex.Observable
 import io.reactivex.schedulers.Schedulers
 import java.lang.Exception
 import java.util.*
 import kotlin.collections.ArrayList
 
+typealias GradesUpdate = Pair<Grades, List<Int>?>
+
 class GradesViewModel: ViewModel() {
 
     private val cph by lazy { CryptoSharedPreferencesHolder.instance }
     private val sh by lazy { StringHolder.instance }
 
-    @Suppress("UNCHECKED_CAST")
-    fun requestGrades(): Observable<Grades> {
-        return requestCourses()
-            .runInThread()
-            .flatMap { courses ->
-                val requests = courses.map { course ->
-                    requestGrades(course).map { it.map { jGrade -> Grade.from(jGrade) } }
-                }
-                Observable.combineLatest(requests) {
-                    it.toCollection(ArrayList()) as ArrayList<List<Grade>>
-                }
-            }
-            .map { it.flatten() }
+    // structure and content of the last emitted list, to bind only the rows a refresh patched
+    private var shownStructure = emptyList<Int>()
+    private var shownContent = emptyList<Int>()
+
+    /**
+     * Grades grouped by semester. The second value are the changed positions if the list kept its structure,
+     * otherwise null.
+     */
+    fun requestGrades(refresh: Boolean = false): Observable<GradesUpdate> {
+        val auth = cph.getAuthToken() ?: ""
+        return requestCourses(auth, refresh)
+            .flatMap { courses -> GradeRepository.grades(auth, courses, refresh) }
+            .runInThread(Schedulers.io())
             .map { grades ->
                 val sortedKeys      = mutableSetOf<Long>()
                 val sortedValues    = mutableSetOf<Grade>()
@@ -42,44 +47,55 @@ class GradesViewModel: ViewModel() {
                 sortedKeys to sortedValues
             }
             .map { pair ->
-                val result = Grades()
+                traced(Stage.MAP, { "grades" }) {
+                    val result = Grades()
 
-                if (pair.second.isNotEmpty()){
-                    // hole average & credits
-                    val holeCredits = pair.second.map { it.credits }.sum()
-                    val holeGrades  = pair.second.map { it.credits * (it.grade?.div(100f) ?: 0f) }.sum()
+                    if (pair.second.isNotEmpty()){
+                        // hole average & credits
+                        val holeCredits = pair.second.map { it.credits }.sum()
+                        val holeGrades  = pair.second.map { it.credits * (it.grade?.div(100f) ?: 0f) }.sum()
 
-                    //bug 21007 average grades turned off
-                    result.add(GradeAverageItem(try { if (holeGrades > 0) { holeGrades / holeCredits } else { 0f } } catch (e: Exception) { 0f }, holeCredits))
-                    if (requestNotes().blockingSingle().isNotEmpty()){
-                        result.add(GradeWarningItem(requestNotes().blockingSingle()))
-                    }
-                    // flatten list and converting to header and grade item
-                    pair.first.forEach { key ->
-                        val gradeValues = pair.second.filter { f -> f.semester == key }.sortedWith(compareBy { it })
-                        val credits = gradeValues.map { it.credits }.sum()
-                        val grades = gradeValues.map { it.credits *  (it.grade?.div(100f) ?: 0f) }.sum()
-                        val gradeAverage = try { if (grades > 0) { grades / credits } else { 0f } } catch (e: Exception) { 0f }
                         //bug 21007 average grades turned off
-                        //result.add(GradeHeaderItem(getSemester(key), "${sh.getString(R.string.exams_grade_average, gradeAverage)} (${sh.getString(R.string.exams_stats_count_credits, credits)})"))
-                        result.add(GradeHeaderItem(getSemester(key),
-                            sh.getString(R.string.exams_stats_count_credits, credits)
-                        ))
-                        result.addAll(gradeValues.map { v -> GradeItem(v) })
+                        result.add(GradeAverageItem(try { if (holeGrades > 0) { holeGrades / holeCredits } else { 0f } } catch (e: Exception) { 0f }, holeCredits))
+                        if (requestNotes().blockingSingle().isNotEmpty()){
+                            result.add(GradeWarningItem(requestNotes().blockingSingle()))
+                        }
+                        // flatten list and converting to header and grade item
+                        pair.first.forEach { key ->
+                            val gradeValues = pair.second.filter { f -> f.semester == key }.sortedWith(compareBy { it })
+                            val credits = gradeValues.map { it.credits }.sum()
+                            val grades = gradeValues.map { it.credits *  (it.grade?.div(100f) ?: 0f) }.sum()
+                            val gradeAverage = try { if (grades > 0) { grades / credits } else { 0f } } catch (e: Exception) { 0f }
+                            //bug 21007 average grades turned off
+                            //result.add(GradeHeaderItem(getSemester(key), "${sh.getString(R.string.exams_grade_average, gradeAverage)} (${sh.getString(R.string.exams_stats_count_credits, credits)})"))
+                            result.add(GradeHeaderItem(getSemester(key),
+                                sh.getString(R.string.exams_stats_count_credits, credits)
+                            ))
+                            result.addAll(gradeValues.map { v -> GradeItem(v) })
+                        }
+
                     }
 
+                    result
                 }
-
-                result
             }
+            .map { grades -> grades to changedPositions(grades) }
     }
 
-    private fun requestCourses(): Observable<List<Course>> {
-        return RestApi
-            .courseEndpoint
-            .getCourses("Basic ${cph.getAuthToken()}")
+    @Synchronized
+    private fun changedPositions(grades: Grades): List<Int>? {
+        val structure = grades.map { if (it is GradeItem) it.hashCode() else it.viewType }
+        val content = grades.map { if (it is GradeItem) it.contentHash else it.hashCode() }
+        val changed = if (structure == shownStructure) content.indices.filter { content[it] != shownContent[it] } else null
+        shownStructure = structure
+        shownContent = content
+        return changed
+    }
+
+    private fun requestCourses(auth: String, refresh: Boolean): Observable<List<Course>> {
+        return GradeRepository
+            .courses(auth, refresh)
             .runInThread(Schedulers.io())
-            .map { it.map { jCourse -> Course.from(jCourse) } }
     }
 
     private fun requestNotes(): Observable<String> {
@@ -90,17 +106,6 @@ class GradesViewModel: ViewModel() {
             .map { jNotes -> jNotes.grades }
     }
 
-    private fun requestGrades(forCourse: Course): Observable<List<JGrade>> {
-        return RestApi
-            .gradeEndpoint
-            .getGrades(
-                "Basic ${cph.getAuthToken()}",
-                forCourse.examinationRegulations.toString(),
-                forCourse.majorNumber,
-                forCourse.graduationNumber)
-            .runInThread(Schedulers.io())
-    }
-
     private fun getSemester(semester: Long): String {
         val s = "$semester"
         return if (s.count() < 5) {
@@ -1,7 +1,7 @@
 package de.htwdd.htwdresden.ui.viewmodels.fragments
 
 import androidx.lifecycle.ViewModel
-import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.network.GradeRepository
 import de.htwdd.htwdresden.ui.models.Course
 import de.htwdd.htwdresden.utils.extensions.runInThread
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
@@ -13,11 +13,9 @@ class LoginViewModel: ViewModel() {
     private val cph by lazy { CryptoSharedPreferencesHolder.instance }
 
     fun login(token: String): Observable<List<Course>> {
-        return RestApi
-            .courseEndpoint
-            .getCourses("Basic $token")
+        return GradeRepository
+            .login(token)
             .runInThread(Schedulers.io())
-            .map { it.map { jCourse -> Course.from(jCourse) } }
     }
 
     fun saveToken(token: String) {
@@ -3,68 +3,98 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 import androidx.lifecycle.ViewModel
 import com.google.gson.Gson
 import de.htwdd.htwdresden.adapter.Managements
+import de.htwdd.htwdresden.network.ContentHashStore
 import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.network.unlessNotModified
 import de.htwdd.htwdresden.ui.models.*
 import de.htwdd.htwdresden.utils.extensions.debug
+import de.htwdd.htwdresden.utils.extensions.format
 import de.htwdd.htwdresden.utils.extensions.runInThread
 import de.htwdd.htwdresden.utils.holders.ResourceHolder
 import io.reactivex.Observable
+import io.reactivex.Scheduler
 import io.reactivex.rxkotlin.Observables
 import io.reactivex.schedulers.Schedulers
+import retrofit2.Response
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.collections.ArrayList
 
 
 class ManagementViewModel: ViewModel() {
 
+    companion object {
+        private val contentHashes = ContentHashStore()
+        private val sections = ConcurrentHashMap<String, Managements>()
+    }
+
     private val rh: ResourceHolder by lazy { ResourceHolder.instance }
 
+    /**
+     * Emits every request, unchanged documents are not mapped again but taken from the cached sections. The adapter
+     * skips a list equal to the shown one.
+     */
     fun request(): Observable<Managements> {
         return Observables.combineLatest(
             requestSemesterPlan().runInThread(),
             loadStudentAdministration().runInThread(),
             loadStura().runInThread(),
-            loadPrinicipalOffice().runInThread()) { s, m1, m2, m3 ->
-            Managements().apply {
-                addAll(s)
-                addAll(m1)
-                addAll(m2)
-                addAll(m3)
-            }
-        }.debug()
+            loadPrinicipalOffice().runInThread()) { s, m1, m2, m3 -> listOf(s, m1, m2, m3) }
+            .map { current -> Managements().apply { current.forEach { addAll(it) } } }
+            .debug()
     }
 
     @Suppress("UNCHECKED_CAST")
     private fun requestSemesterPlan(): Observable<Managements> {
-        return RestApi.docsEndpoint.semesterPlan(Locale.getDefault().language)
-            .runInThread(Schedulers.io())
-            .map { jSemesterPlans -> jSemesterPlans.map { jSemesterPlan -> SemesterPlan.from(jSemesterPlan) } }
-            .map { semesterPlans -> semesterPlans.filter { Date() in it.period.beginDay..it.period.endDay } }
-            .map { semesterPlans -> semesterPlans.map { SemesterPlanItem(it) }.toCollection(ArrayList()) as Managements }
+        val language = Locale.getDefault().language
+        // The plans are filtered by the current day, so the cached section is valid for one day only
+        return section("semesterplan/$language/${Date().format("yyyy-MM-dd")}", Schedulers.io(), { RestApi.docsEndpoint.semesterPlan(language, it) }) { jSemesterPlans ->
+            jSemesterPlans.map { jSemesterPlan -> SemesterPlan.from(jSemesterPlan) }
+                .filter { Date() in it.period.beginDay..it.period.endDay }
+                .map { SemesterPlanItem(it) }.toCollection(ArrayList()) as Managements
+        }
             .onErrorReturn { Managements() }
     }
 
     @Suppress("UNCHECKED_CAST")
     private fun loadPrinicipalOffice(): Observable<Managements> {
-        return RestApi.docsEndpoint.principalExamOffice(Locale.getDefault().language)
-        .runInThread()
-        .map { jManagement -> Management.from(jManagement) }
-        .map { managements -> arrayListOf(ManagementItem(managements,2)) as Managements }
+        val language = Locale.getDefault().language
+        return section("principalexamoffice/$language", request = { RestApi.docsEndpoint.principalExamOffice(language, it) }) { jManagement ->
+            arrayListOf(ManagementItem(Management.from(jManagement), 2)) as Managements
+        }
     }
 
     @Suppress("UNCHECKED_CAST")
     private fun loadStura(): Observable<Managements> {
-        return RestApi.docsEndpoint.sturaHTW(Locale.getDefault().language)
-            .runInThread()
-            .map { jManagement -> Management.from(jManagement) }
-            .map { managements -> arrayListOf(ManagementItem(managements,3)) as Managements }
+        val language = Locale.getDefault().language
+        return section("sturahtw/$language", request = { RestApi.docsEndpoint.sturaHTW(language, it) }) { jManagement ->
+            arrayListOf(ManagementItem(Management.from(jManagement), 3)) as Managements
+        }
     }
 
     @Suppress("UNCHECKED_CAST")
     private fun loadStudentAdministration(): Observable<Managements> {
-        return RestApi.docsEndpoint.administration(Locale.getDefault().language)
-            .runInThread()
-            .map { jManagement -> Management.from(jManagement) }
-            .map { managements -> arrayListOf(ManagementItem(managements,1)) as Managements }
+        val language = Locale.getDefault().language
+        return section("studentadministration/$language", request = { RestApi.docsEndpoint.administration(language, it) }) { jManagement ->
+            arrayListOf(ManagementItem(Management.from(jManagement), 1)) as Managements
+        }
+    }
+
+    /**
+     * Maps a changed document and caches the section, an unchanged document emits the cached section.
+     */
+    private fun <T> section(
+        key: String,
+        scheduler: Scheduler = Schedulers.newThread(),
+        request: (contentHash: String) -> Observable<Response<T>>,
+        map: (T) -> Managements
+    ): Observable<Managements> {
+        return request(contentHashes[key])
+            .runInThread(scheduler)
+            .unlessNotModified(contentHashes, key)
+            .map(map)
+            .doOnNext { sections[key] = it }
+            .doOnError { contentHashes.forget(key) }
+            .switchIfEmpty(Observable.fromCallable { sections[key] ?: Managements() })
     }
 }
\ No newline at end of file
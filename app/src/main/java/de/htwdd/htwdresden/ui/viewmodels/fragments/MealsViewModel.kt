@@ -2,14 +2,17 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 
 import androidx.lifecycle.ViewModel
 import de.htwdd.htwdresden.adapter.Meals
-import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.network.CanteenRepository
 import de.htwdd.htwdresden.ui.models.Meal
 import de.htwdd.htwdresden.ui.models.MealHeaderItem
 import de.htwdd.htwdresden.ui.models.MealItem
+import de.htwdd.htwdresden.utils.Stage
 import de.htwdd.htwdresden.utils.extensions.datesOfCurrentWeek
 import de.htwdd.htwdresden.utils.extensions.datesOfNextWeek
 import de.htwdd.htwdresden.utils.extensions.format
 import de.htwdd.htwdresden.utils.extensions.runInThread
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import de.htwdd.htwdresden.utils.traced
 import io.reactivex.Observable
 import io.reactivex.schedulers.Schedulers
 import java.util.*
@@ -20,6 +23,8 @@ class MealsViewModel: ViewModel() {
 
     var type: String = "today"
 
+    private val cph by lazy { CryptoSharedPreferencesHolder.instance }
+
     @Suppress("UNCHECKED_CAST")
     fun request(id: Int): Observable<Meals> {                                                       // different reuqest for week type
         return when (type) {
@@ -30,11 +35,11 @@ class MealsViewModel: ViewModel() {
     }
 
     private fun requestForDay(id: String): Observable<Meals> {
-        return RestApi
-            .canteenEndpoint
-            .getMeals(id, Date().format("yyyy-MM-dd"))                                      // api call
+        val filter = cph.getDietFilter()
+        return CanteenRepository
+            .meals(id, Date().format("yyyy-MM-dd"))                                                 // shared meal cache
             .runInThread(Schedulers.io())
-            .map { it.map { jMeal -> Meal.from(jMeal) } }                                           // json to model
+            .map { it.filter { meal -> filter.accepts(meal) } }                                     // diet filter
             .map { meals ->
                 val sortedKeys      = mutableSetOf<String>()
                 val sortedValues    = mutableSetOf<Meal>()
@@ -45,12 +50,14 @@ class MealsViewModel: ViewModel() {
                 sortedKeys to sortedValues                                                          // grouped elements
             }
             .map { pair ->
-                val result = Meals()
-                pair.first.forEach { key ->
-                    result.add(MealHeaderItem(key, Date().format("dd. MMMM")))
-                    result.addAll(pair.second.filter { it.category.contains(key) }.map { MealItem(it) })
+                traced(Stage.MAP, { "meals of the day" }) {
+                    val result = Meals()
+                    pair.first.forEach { key ->
+                        result.add(MealHeaderItem(key, Date().format("dd. MMMM")))
+                        result.addAll(pair.second.filter { it.category.contains(key) }.map { MealItem(it) })
+                    }
+                    result
                 }
-                result
             }
     }
 
@@ -61,12 +68,13 @@ class MealsViewModel: ViewModel() {
         } else {
             GregorianCalendar.getInstance(Locale.GERMAN).datesOfNextWeek                            // all dates for next week
         }
+        val filter = cph.getDietFilter()
 
         return Observable.combineLatest(
             weeks                                                                                   // combine all requested dates
             .map { it.format("yyyy-MM-dd") }
-            .map { RestApi.canteenEndpoint.getMeals(id, it).runInThread(Schedulers.io()) }
-            .map { it.map {  jMeals -> jMeals.map { jMeal -> Meal.from(jMeal) } } }
+            .map { CanteenRepository.meals(id, it).runInThread(Schedulers.io()) }
+            .map { it.map { meals -> meals.filter { meal -> filter.accepts(meal) } } }
         ) { it.toCollection(ArrayList()) as ArrayList<List<Meal>> }
             .runInThread()
             .map { meals ->
@@ -77,12 +85,14 @@ class MealsViewModel: ViewModel() {
                 hMap.toSortedMap()
             }
             .map { hMap ->
-                val result = Meals()
-                for ((k, v) in hMap) {
-                    result.add(MealHeaderItem(k.format("EEEE"), k.format("dd. MMMM")))
-                    result.addAll(v.map { MealItem(it) })
+                traced(Stage.MAP, { "meals of the week" }) {
+                    val result = Meals()
+                    for ((k, v) in hMap) {
+                        result.add(MealHeaderItem(k.format("EEEE"), k.format("dd. MMMM")))
+                        result.addAll(v.map { MealItem(it) })
+                    }
+                    result
                 }
-                result
             }
     }
 }
\ No newline at end of file
@@ -3,7 +3,9 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 import androidx.lifecycle.ViewModel
 import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.adapter.Overviews
-import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.network.CanteenRepository
+import de.htwdd.htwdresden.network.GradeRepository
+import de.htwdd.htwdresden.network.TimetableRepository
 import de.htwdd.htwdresden.ui.models.*
 import de.htwdd.htwdresden.utils.extensions.format
 import de.htwdd.htwdresden.utils.extensions.nullWhenEmpty
@@ -13,18 +15,28 @@ import de.htwdd.htwdresden.utils.holders.StringHolder
 import io.reactivex.Observable
 import io.reactivex.rxkotlin.Observables
 import io.reactivex.schedulers.Schedulers
+import io.realm.RealmResults
 import java.util.*
 import kotlin.collections.ArrayList
 
 class OverviewViewModel: ViewModel() {
 
+    companion object {
+        // Sections of the last load, shown until the sections are loaded again. Keyed by login.
+        @Volatile private var cachedGrades: Pair<String, Overviews>? = null
+    }
+
     private val sh by lazy { StringHolder.instance }
 
+    /**
+     * Emits as soon as every section has a first value and again whenever a section is loaded.
+     * The schedule is read from realm first, meals and grades start with the sections of the last load.
+     */
     fun request(): Observable<Overviews> {
         return Observables.combineLatest(
-            requestScheduleForToday().runInThread(),
-            requestMealsForToday().runInThread(),
-            requestGrades().runInThread()
+            requestScheduleForToday(),
+            requestMealsForToday(),
+            requestGrades()
         ) { s, m, g ->
             Overviews().apply {
                 addAll(s)
@@ -34,90 +46,84 @@ class OverviewViewModel: ViewModel() {
         }
     }
 
-    private fun requestScheduleForToday(): Observable<Overviews> {
-        val result = Overviews()
-        result.add(OverviewHeaderItem(sh.getString(R.string.navi_timetable), Date().format("EEEE, dd. MMMM")))
+    private fun scheduleHeader() = OverviewHeaderItem(sh.getString(R.string.navi_timetable), Date().format("EEEE, dd. MMMM"))
 
-        val auth = CryptoSharedPreferencesHolder.instance.getStudyAuth() ?: return Observable.defer {
-            result.add(OverviewStudyGroupItem())
-            Observable.just(result)
+    private fun requestScheduleForToday(): Observable<Overviews> {
+        val auth = CryptoSharedPreferencesHolder.instance.getStudyAuth() ?: return Observable.fromCallable {
+            Overviews().apply {
+                add(scheduleHeader())
+                add(OverviewStudyGroupItem())
+            }
         }
 
-        return RestApi
-            .timetableEndpoint
-            .timetable(auth.group, auth.major, auth.studyYear)
-            .map { it.map { jTimetable -> Timetable.from(jTimetable) } }
-            .map { it.sortedWith(compareBy { c -> c }) }
-            .map {
-                val hiddenEventsIds = getHiddenTimetables()
-                deleteAllIfNotCreatedByUserOrElective()
-                it.forEach { timetable ->
-                    if(hiddenEventsIds.contains(timetable.id)) timetable.isHidden = true
-                    TimetableRealm().update(timetable) {}
-                }
-                getNotHiddenTimetables()
+        val local = Observable.fromCallable {
+            withNotHiddenTimetableRealms { timetables ->
+                if (timetables.isEmpty()) Overviews().apply { add(scheduleHeader()) } else scheduleSection(timetables)
             }
-            .map { it.filter { timetable -> timetable.lessonDays.contains(Date().format("MM-dd-yyyy")) } }
-            .map { it.sortedWith(compareBy { c -> c }) }
-            .map {
-                result.apply {
-                    addAll(it.map { TimetableItem(it) })
-                    if (it.isEmpty()) {
-                        add(OverviewFreeDayItem())
-                    }
-                }
-            }
-            .onErrorReturn { Overviews().apply {
-                val timetablesFromDB = getTimetablesFromDb()
-                if(timetablesFromDB.isNotEmpty()) {
-                    add(OverviewHeaderItem(sh.getString(R.string.navi_timetable), Date().format("EEEE, dd. MMMM")))
-                    addAll(getTimetablesFromDb())
-                }
-            } }
+        }
+
+        val remote = TimetableRepository
+            .refresh(auth)                                                                          // Empty if unchanged
+            .map { withNotHiddenTimetableRealms { timetables -> scheduleSection(timetables) } }
+            .onErrorResumeNext(Observable.empty<Overviews>())                                       // Keep the stored schedule
+
+        return local.concatWith(remote).runInThread(Schedulers.io())
     }
 
-    private fun getTimetablesFromDb(): List<TimetableItem> {
-        val timetables = getNotHiddenTimetables()
-        return if(timetables.isEmpty()) emptyList()
-        else timetables.filter { timetable -> timetable.lessonDays.contains(Date().format("MM-dd-yyyy")) }.sortedWith(compareBy { c -> c }).map { TimetableItem(it) }
+    private fun scheduleSection(timetables: RealmResults<TimetableRealm>): Overviews {                // Converts only the lessons of today
+        val day = Date().format("MM-dd-yyyy")
+        val today = timetables
+            .filter { timetable -> timetable.lessonDays.contains(day) }
+            .map { TimetableRealm.toTimetable(it) }
+            .sortedWith(compareBy { c -> c })
+        return Overviews().apply {
+            add(scheduleHeader())
+            addAll(today.map { TimetableItem(it) })
+            if (today.isEmpty()) {
+                add(OverviewFreeDayItem())
+            }
+        }
     }
 
     private fun requestMealsForToday(): Observable<Overviews> {
-        return RestApi
-            .canteenEndpoint
-            .getMeals("80", Date().format("yyyy-MM-dd"))
+        val day = Date().format("yyyy-MM-dd")
+        val filter = CryptoSharedPreferencesHolder.instance.getDietFilter()
+        val placeholder = CanteenRepository.cachedMeals("80", day)?.let { mealsSection(it, filter) } ?: Overviews()
+        return CanteenRepository
+            .meals("80", day)
             .runInThread(Schedulers.io())
-            .map { it.map { jMeal -> Meal.from(jMeal) } }
-            .map { meals ->
-                val result = Overviews()
-                if (meals.isNotEmpty()) {
-                    result.add(OverviewHeaderItem(sh.getString(R.string.mensa), sh.getString(R.string.mensa_reichenbach)))
-                }
-                result.addAll(meals.map { OverviewMensaItem(it) })
-                result
-            }
-            .onErrorReturn { Overviews() }
+            .map { mealsSection(it, filter) }
+            .onErrorReturn { placeholder }
+            .startWith(placeholder)
     }
 
-    @Suppress("UNCHECKED_CAST")
-    private fun requestGrades(): Observable<Overviews> {
-        val result = Overviews().apply {
-            //bug 21007 average grades turned off
-            add(OverviewHeaderItem(sh.getString(R.string.navi_exams), sh.getString(R.string.exams_grade_average, 0.0), false))
+    // meals are shared unfiltered with their diet flags, so a changed filter applies to the cached ones as well
+    private fun mealsSection(meals: List<Meal>, filter: DietFilter): Overviews {
+        val result = Overviews()
+        val shown = meals.filter { filter.accepts(it) }
+        if (shown.isNotEmpty()) {
+            result.add(OverviewHeaderItem(sh.getString(R.string.mensa), sh.getString(R.string.mensa_reichenbach)))
         }
+        result.addAll(shown.map { OverviewMensaItem(it) })
+        return result
+    }
 
-        val auth = CryptoSharedPreferencesHolder.instance.getAuthToken()?.nullWhenEmpty ?: return Observable.defer {
-            result.add(OverviewLoginItem())
-            Observable.just(result)
+    private fun gradesHeader() =
+        //bug 21007 average grades turned off
+        OverviewHeaderItem(sh.getString(R.string.navi_exams), sh.getString(R.string.exams_grade_average, 0.0), false)
+
+    private fun requestGrades(): Observable<Overviews> {
+        val auth = CryptoSharedPreferencesHolder.instance.getAuthToken()?.nullWhenEmpty ?: return Observable.fromCallable {
+            Overviews().apply {
+                add(gradesHeader())
+                add(OverviewLoginItem())
+            }
         }
+        val placeholder = cachedGrades?.takeIf { it.first == auth }?.second ?: Overviews().apply { add(gradesHeader()) }
 
         return requestCourses(auth)
-            .runInThread()
-            .flatMap {  courses ->
-                val requests = courses.map { course -> requestGrades(course, auth) }
-                Observable.combineLatest(requests) { it.toCollection(ArrayList()) as ArrayList<List<Grade>> }
-            }
-            .map { it.flatten() }
+            .flatMap { courses -> GradeRepository.grades(auth, courses) }
+            .runInThread(Schedulers.io())
             .map { grades ->
                 val sortedKeys      = mutableSetOf<Long>()
                 val sortedValues    = mutableSetOf<Grade>()
@@ -132,31 +138,21 @@ class OverviewViewModel: ViewModel() {
                 val holeGrades  = pair.second.map { it.credits * (it.grade?.div(100f) ?: 0f) }.sum()
                 val avg =  if (holeGrades > 0) { holeGrades / holeCredits } else { 0f }
                 //bug 21007 average grades turned off
-                val headerItem = result[0] as OverviewHeaderItem
+                val headerItem = gradesHeader()
                 headerItem.credits = sh.getString(R.string.exams_grade_average, avg)
-                result.add(OverviewGradeItem(pair.second.filter { it.grade != null }.size.toString(), holeCredits))
-                result
+                Overviews().apply {
+                    add(headerItem)
+                    add(OverviewGradeItem(pair.second.filter { it.grade != null }.size.toString(), holeCredits))
+                }
             }
+            .doOnNext { cachedGrades = auth to it }
             .onErrorReturn { Overviews() }
+            .startWith(placeholder)
     }
 
     private fun requestCourses(auth: String): Observable<List<Course>> {
-        return RestApi
-            .courseEndpoint
-            .getCourses("Basic $auth")
-            .runInThread(Schedulers.io())
-            .map { it.map { jCourse -> Course.from(jCourse) } }
-    }
-
-    private fun requestGrades(forCourse: Course, auth: String): Observable<List<Grade>> {
-        return RestApi
-            .gradeEndpoint
-            .getGrades(
-                "Basic $auth",
-                forCourse.examinationRegulations.toString(),
-                forCourse.majorNumber,
-                forCourse.graduationNumber)
+        return GradeRepository
+            .courses(auth)
             .runInThread(Schedulers.io())
-            .map { it.map { jGrade -> Grade.from(jGrade) } }
     }
 }
\ No newline at end of file
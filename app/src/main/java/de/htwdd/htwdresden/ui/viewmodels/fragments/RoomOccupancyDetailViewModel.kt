@@ -4,6 +4,8 @@ import androidx.lifecycle.ViewModel
 import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.adapter.DetailOccupancies
 import de.htwdd.htwdresden.db.RoomRealm
+import de.htwdd.htwdresden.db.closeRealm
+import de.htwdd.htwdresden.db.openRealm
 import de.htwdd.htwdresden.ui.models.DetailRoomOccupancyHeaderItem
 import de.htwdd.htwdresden.ui.models.DetailRoomOccupancyItem
 import de.htwdd.htwdresden.utils.extensions.format
@@ -17,7 +19,7 @@ import kotlin.collections.ArrayList
 
 class RoomOccupancyDetailViewModel: ViewModel() {
 
-    private val realm: Realm by lazy { Realm.getDefaultInstance() }
+    private val realm: Realm by lazy { openRealm(this) }
     private val sh: StringHolder by lazy { StringHolder.instance }
 
     @Suppress("UNCHECKED_CAST")
@@ -44,4 +46,8 @@ class RoomOccupancyDetailViewModel: ViewModel() {
             }
     }
 
+    override fun onCleared() {
+        super.onCleared()
+        closeRealm(this, realm)
+    }
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 import androidx.lifecycle.ViewModel
 import de.htwdd.htwdresden.adapter.Occupancies
 import de.htwdd.htwdresden.db.RoomRealm
+import de.htwdd.htwdresden.db.closeRealm
+import de.htwdd.htwdresden.db.openRealm
 import de.htwdd.htwdresden.network.RestApi
 import de.htwdd.htwdresden.ui.models.RoomOccupancyItem
 import de.htwdd.htwdresden.ui.models.Timetable
@@ -21,7 +23,7 @@ typealias OccupancyCallback = (occupancies: Occupancies,
 class RoomOccupancyViewModel: ViewModel() {
 
     private lateinit var roomRealms: RealmResults<RoomRealm>
-    private val realm: Realm by lazy { Realm.getDefaultInstance() }
+    private val realm: Realm by lazy { openRealm(this) }
     private var onRealmChangedClosure: OccupancyCallback = { _, _, _, _ -> }
 
     @Suppress("UNCHECKED_CAST")
@@ -52,9 +54,7 @@ class RoomOccupancyViewModel: ViewModel() {
 
     override fun onCleared() {
         super.onCleared()
-        realm.apply {
-            removeAllChangeListeners()
-            close()
-        }
+        realm.removeAllChangeListeners()
+        closeRealm(this, realm)
     }
 }
\ No newline at end of file
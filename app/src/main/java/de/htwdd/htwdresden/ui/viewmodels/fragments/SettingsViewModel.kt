@@ -12,6 +12,9 @@ class SettingsViewModel: ViewModel() {
     private var onResetEventsClosure: () -> Unit = {}
     private var onStudyGroupClosure: () -> Unit = {}
     private var onLoginClickClosure: () -> Unit = {}
+    private var onNetworkMetricsClosure: () -> Unit = {}
+    private var onDietFilterClosure: () -> Unit = {}
+    private var onAutoMuteModeClosure: () -> Unit = {}
 
     val model: SettingsModel by lazy { SettingsModel() }
     private val rh by lazy { ResourceHolder.instance }
@@ -25,6 +28,9 @@ class SettingsViewModel: ViewModel() {
             onResetEventsClick { onResetEventsClosure() }
             onStudyGroupClick { onStudyGroupClosure() }
             onLoginClick { onLoginClickClosure() }
+            onNetworkMetricsClick { onNetworkMetricsClosure() }
+            onDietFilterClick { onDietFilterClosure() }
+            onAutoMuteModeClick { onAutoMuteModeClosure() }
         }
     }
 
@@ -50,4 +56,16 @@ class SettingsViewModel: ViewModel() {
     fun onLoginClick(callback: () -> Unit) {
         onLoginClickClosure = callback
     }
+
+    fun onNetworkMetricsClick(callback: () -> Unit) {
+        onNetworkMetricsClosure = callback
+    }
+
+    fun onDietFilterClick(callback: () -> Unit) {
+        onDietFilterClosure = callback
+    }
+
+    fun onAutoMuteModeClick(callback: () -> Unit) {
+        onAutoMuteModeClosure = callback
+    }
 }
\ No newline at end of file
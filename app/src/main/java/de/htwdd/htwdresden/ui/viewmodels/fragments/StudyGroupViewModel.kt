@@ -2,7 +2,9 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 
 import android.util.Base64
 import androidx.lifecycle.ViewModel
+import de.htwdd.htwdresden.network.ContentHashStore
 import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.network.unlessNotModified
 import de.htwdd.htwdresden.ui.models.StudyYear
 import de.htwdd.htwdresden.utils.extensions.runInThread
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
@@ -12,14 +14,27 @@ import java.nio.charset.Charset
 
 class StudyGroupViewModel: ViewModel() {
 
+    companion object {
+        private const val CONTENT_KEY = "studyGroups"
+        private val contentHashes = ContentHashStore()
+        @Volatile private var studyYears = emptyList<StudyYear>()
+    }
+
     private val cph by lazy { CryptoSharedPreferencesHolder.instance }
 
+    /**
+     * Unchanged study groups are not parsed again, the list mapped on the last change is reused.
+     */
     fun request(): Observable<List<StudyYear>> {
         return RestApi
             .generalEndpoint
-            .studyGroups()
+            .studyGroups(contentHashes[CONTENT_KEY])
             .runInThread(Schedulers.io())
+            .unlessNotModified(contentHashes, CONTENT_KEY)
             .map { jItems -> jItems.map { StudyYear.from(it) } }
+            .doOnNext { studyYears = it }
+            .doOnError { contentHashes.forget(CONTENT_KEY) }
+            .switchIfEmpty(Observable.fromCallable { studyYears })
             .onErrorReturn { emptyList<StudyYear>() }
     }
 
@@ -2,69 +2,69 @@ package de.htwdd.htwdresden.ui.viewmodels.fragments
 
 import androidx.databinding.ObservableArrayList
 import androidx.lifecycle.ViewModel
-import androidx.lifecycle.viewModelScope
+import de.htwdd.htwdresden.db.closeRealm
+import de.htwdd.htwdresden.db.openRealm
 import de.htwdd.htwdresden.ui.models.*
 import de.htwdd.htwdresden.ui.views.fragments.TimetableCalendarFragment.Companion.CALENDAR_CURRENT_WEEK
-import de.htwdd.htwdresden.ui.views.fragments.TimetableCalendarFragment.Companion.CALENDAR_NEXT_WEEK
-import de.htwdd.htwdresden.utils.extensions.currentWeek
-import de.htwdd.htwdresden.utils.extensions.currentYear
-import de.htwdd.htwdresden.utils.extensions.toDate
+import de.htwdd.htwdresden.utils.extensions.format
+import de.htwdd.htwdresden.utils.extensions.getDaysOfWeek
+import io.realm.OrderedCollectionChangeSet
 import io.realm.Realm
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.delay
-import kotlinx.coroutines.launch
-import kotlinx.coroutines.withContext
-import java.util.*
+import io.realm.RealmResults
 
 class TimetableCalendarViewModel(private val calenderType: Int) : ViewModel() {
 
     val items = ObservableArrayList<Timetable>()
 
+    private val realm: Realm by lazy { openRealm(this) }
+    private var timetableRealms: RealmResults<TimetableRealm>? = null
+    private val materialized = HashMap<String, Timetable>()
+
     fun setup() {
         request()
     }
 
+    /**
+     * Binds the grid to the live lessons. Only lessons taking place in the shown week are materialized, again only
+     * if realm reports them as changed. The week is resolved on every request, so a grid kept across midnight of
+     * sunday moves on to the new week.
+     */
     fun request() {
-        viewModelScope.launch {
-            try {
-                withContext(Dispatchers.IO) {
-                    delay(1000)
-                    val realm = Realm.getDefaultInstance()
-                    try {
-                        val list = realm.where(TimetableRealm::class.java).findAll()
-                        val timetableList = list.map{TimetableRealm.toTimetable(it)}.filter { !it.isHidden }
-                        setWeekOverviewData(timetableList)
-                    } catch (e: Exception) {
-                    } finally {
-                        realm.close()
-                    }
-                }
-            } catch (e: Exception) {
-                e.printStackTrace()
-            } finally {
+        timetableRealms?.let { results ->
+            if (results.isLoaded) showWeek(results)
+            return
+        }
+        timetableRealms = realm.where(TimetableRealm::class.java)
+            .equalTo("isHidden", false)
+            .findAllAsync()
+            .apply {
+                addChangeListener { results, changeSet -> onTimetablesChanged(results, changeSet) }
             }
+    }
+
+    private fun onTimetablesChanged(results: RealmResults<TimetableRealm>, changeSet: OrderedCollectionChangeSet) {
+        changeSet.changes.forEach { index -> results[index]?.let { materialized.remove(it.id) } }
+        showWeek(results)
+    }
+
+    private fun showWeek(results: RealmResults<TimetableRealm>) {
+        val weekDays = getDaysOfWeek(calenderType == CALENDAR_CURRENT_WEEK).mapNotNullTo(HashSet()) { it?.format("MM-dd-yyyy") }
+        val week = results.filter { timetable -> timetable.lessonDays.any { weekDays.contains(it) } }
+        val ids = week.mapTo(HashSet()) { it.id }
+        materialized.keys.retainAll(ids)
+
+        val timetables = week.map { materialized.getOrPut(it.id) { TimetableRealm.toTimetable(it) } }
+        if (timetables != items.toList()) {
+            items.clear()
+            items.addAll(timetables)
         }
     }
 
-    private fun setWeekOverviewData(timetables: List<Timetable>) {
-        val timetableList = ArrayList<Timetable>()
-        timetables.forEach { timetable ->
-            timetable.lessonDays.forEach {
-                val date = it.toDate("MM-dd-yyyy")
-                if(date!=null) {
-                    val targetCalender = Calendar.getInstance()
-                    targetCalender.time = date
-                    if(calenderType == CALENDAR_CURRENT_WEEK && targetCalender.get(Calendar.WEEK_OF_YEAR)==currentWeek && targetCalender.get(
-                            Calendar.YEAR)==currentYear) {
-                        timetableList.add(timetable)
-                    } else if (calenderType == CALENDAR_NEXT_WEEK && targetCalender.get(Calendar.WEEK_OF_YEAR)==currentWeek+1 && targetCalender.get(
-                            Calendar.YEAR)==currentYear) {
-                        timetableList.add(timetable)
-                    }
-                }
-            }
+    override fun onCleared() {
+        super.onCleared()
+        timetableRealms?.let {
+            it.removeAllChangeListeners()
+            closeRealm(this, realm)
         }
-        items.clear()
-        items.addAll(timetableList)
     }
-}
\ No newline at end of file
+}
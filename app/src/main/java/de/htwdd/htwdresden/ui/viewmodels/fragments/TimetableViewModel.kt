@@ -1,23 +1,34 @@
 package de.htwdd.htwdresden.ui.viewmodels.fragments
 
 import android.content.ContentResolver
-import android.content.ContentValues
-import android.provider.CalendarContract
 import androidx.lifecycle.*
 import de.htwdd.htwdresden.adapter.Timetables
+import de.htwdd.htwdresden.db.closeRealm
+import de.htwdd.htwdresden.db.openRealm
 import de.htwdd.htwdresden.network.RestApi
+import de.htwdd.htwdresden.network.TimetableRepository
 import de.htwdd.htwdresden.ui.models.*
+import de.htwdd.htwdresden.utils.CalendarExporter
+import de.htwdd.htwdresden.utils.CalendarOccurrence
+import de.htwdd.htwdresden.utils.Stage
 import de.htwdd.htwdresden.utils.extensions.*
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
 import de.htwdd.htwdresden.utils.holders.StringHolder
+import de.htwdd.htwdresden.utils.traced
 import io.reactivex.Observable
 import io.reactivex.schedulers.Schedulers
+import io.realm.OrderedCollectionChangeSet
+import io.realm.Realm
+import io.realm.RealmResults
+import io.realm.Sort
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import java.util.*
 
+typealias TimetablesCallback = (timetables: Timetables, changedPositions: List<Int>?) -> Unit
+
 class TimetableViewModel: ViewModel() {
 
     private val cph by lazy { CryptoSharedPreferencesHolder.instance }
@@ -36,50 +47,107 @@ class TimetableViewModel: ViewModel() {
     val showError: LiveData<Boolean> = _showError
 
     private val sh: StringHolder by lazy { StringHolder.instance }
-
-    @Suppress("UNCHECKED_CAST")
-    fun request(): Observable<Timetables> {
-        val auth = cph.getStudyAuth() ?: return Observable.error(Exception("No Credentials"))
-        val timetables = RestApi.timetableEndpoint.timetable(auth.group, auth.major, auth.studyYear)
-            .runInThread()
-            .map { jTimetables -> jTimetables.map { Timetable.from(it) } }
-            .map { it.sortedWith(compareBy { c -> c }) }
-        return handleTimetableResult(timetables)
-    }
-
-    private fun handleTimetableResult(timetables: Observable<List<Timetable>>): Observable<Timetables> {
-        return timetables.map { timetableList ->                                                    // Grouping to lesson days and lessons
-            val hiddenEventsIds = getHiddenTimetables()
-            deleteAllIfNotCreatedByUserOrElective()
-            timetableList.forEach {
-                if(hiddenEventsIds.contains(it.id)) {
-                    it.isHidden = true
-                }
-                TimetableRealm().update(it) {}
+    private val realm: Realm by lazy { openRealm(this) }
+    private var timetableRealms: RealmResults<TimetableRealm>? = null
+    private var onTimetablesChangedClosure: TimetablesCallback = { _, _ -> }
+    private var rows: List<LessonRow> = emptyList()
+    private var isDelivered = false
+    private val revisions = HashMap<String, Int>()
+    private var notes = ""
+
+    /**
+     * Lesson of the list on one of its lesson days, [dayKey] is the day as yyyyMMdd for sorting.
+     */
+    private data class LessonRow(val id: String, val day: String, val dayKey: Int)
+
+    /**
+     * Binds the list to the live, not hidden lessons. Rows are derived from the id and lesson days of each lesson,
+     * the lessons themselves are materialized when their row is bound. Lessons realm reports as changed are rebound,
+     * the whole list only if lessons or lesson days were added or removed. Querying again delivers the current list.
+     */
+    fun query() {
+        if (timetableRealms != null) return redeliver()
+        timetableRealms = realm.where(TimetableRealm::class.java)
+            .equalTo("isHidden", false)
+            .sort(arrayOf("beginTime", "name"), arrayOf(Sort.ASCENDING, Sort.ASCENDING))
+            .findAllAsync()
+            .apply {
+                addChangeListener { results, changeSet -> onTimetablesChanged(results, changeSet) }
             }
-            val sortedKeySet = mutableSetOf<String>()
-            val sortedValueSet = mutableSetOf<Timetable>()
-            getNotHiddenTimetables().groupBy { it.lessonDays }.apply {
-                keys.forEach { k ->
-                    k.sorted().forEach { sortedKeySet.add(it) }
-                }                                                                                   // Lesson days
-                values.forEach { v -> v.forEach { sortedValueSet.add(it) } }                        // Lessons
+    }
+
+    /**
+     * Registers [callback] for the list, it receives the current list right away if the lessons are already loaded,
+     * e.g. for a view recreated on a configuration change.
+     */
+    fun onTimetablesChanged(callback: TimetablesCallback) {
+        onTimetablesChangedClosure = callback
+        redeliver()
+    }
+
+    private fun redeliver() {
+        if (isDelivered) onTimetablesChangedClosure(timetables(), null)
+    }
+
+    private fun onTimetablesChanged(results: RealmResults<TimetableRealm>, changeSet: OrderedCollectionChangeSet) {
+        val changedIds = changeSet.changes.mapNotNullTo(HashSet()) { index -> results[index]?.id }
+        changedIds.forEach { revisions[it] = (revisions[it] ?: 0) + 1 }
+
+        val lessonRows = ArrayList<LessonRow>()
+        results.forEach { timetable ->
+            timetable.lessonDays.forEach { day -> lessonRows.add(LessonRow(timetable.id, day, dayKey(day))) }
+        }
+        lessonRows.sortBy { it.dayKey }                                                             // Stable, keeps the order by begin time
+
+        val isRestructured = changeSet.state == OrderedCollectionChangeSet.State.INITIAL || lessonRows != rows
+        rows = lessonRows
+        isDelivered = true
+        val timetables = timetables()
+        val changedPositions = if (isRestructured) null else timetables.indices.filter { index ->
+            (timetables[index] as? LiveTimetableItem)?.id?.let { changedIds.contains(it) } == true
+        }
+        onTimetablesChangedClosure(timetables, changedPositions)
+    }
+
+    private fun timetables(): Timetables = traced(Stage.MAP, { "${rows.size} lessons" }) {          // Single List -> Lesson Days[ Lessons ]
+        val result = Timetables()
+        if (notes.isNotEmpty()) {
+            result.add(TimetableWarningItem(notes))
+        }
+        var day: String? = null
+        rows.forEach { row ->
+            if (row.day != day) {
+                day = row.day
+                result.add(dateStringToHeaderItem(row.day))
+                //TODO: if in a list of holidays from semesterplan.json, add a holiday timetable item
             }
-            Pair(sortedKeySet.sortedWith(compareBy { it }), sortedValueSet)
+            result.add(LiveTimetableItem(row.id, row.day, revisions[row.id] ?: 0, ::materialize))
         }
-            .map {                                                                                  // Pair -> Single List -> Lesson Days[ Lessons ]
-                val result = Timetables()
-                if (requestNotes().blockingSingle().isNotEmpty()){
-                    result.add(TimetableWarningItem(requestNotes().blockingSingle()))
-                }
-                it.first.sortedWith(compareBy { it.toDate("MM-dd-yyyy") }).forEach { dateKey ->
-                    result.add(dateStringToHeaderItem(dateKey))
-                    //TODO: if in a list of holidays from semesterplan.json, add a holiday timetable item
-                    result.addAll(it.second.filter { p -> p.lessonDays.contains(dateKey) }
-                        .sortedBy { it.beginTime }
-                        .map { filteredItem -> TimetableItem(filteredItem) })
+        result
+    }
+
+    private fun materialize(id: String) =
+        timetableRealms?.where()?.equalTo("id", id)?.findFirst()?.let { TimetableRealm.toTimetable(it) }
+
+    /** "MM-dd-yyyy" as yyyyMMdd. */
+    private fun dayKey(day: String) = if (day.length == 10) "${day.substring(6)}${day.substring(0, 2)}${day.substring(3, 5)}".toIntOrNull() ?: 0 else 0
+
+    /**
+     * Fetches the timetable and stores it if it changed, the list follows through the live results.
+     * Emits the notes for the timetable afterwards.
+     */
+    fun request(): Observable<String> {
+        val auth = cph.getStudyAuth() ?: return Observable.error(Exception("No Credentials"))
+        return TimetableRepository.refresh(auth)
+            .runInThread(Schedulers.io())
+            .ignoreElements()
+            .andThen(requestNotes().onErrorReturnItem(""))
+            .runInUiThread()
+            .doOnNext { text ->
+                if (text != notes) {
+                    notes = text
+                    redeliver()
                 }
-                result
             }
     }
 
@@ -91,60 +159,32 @@ class TimetableViewModel: ViewModel() {
             .map { jNotes -> jNotes.timetable }
     }
 
-    fun getTimetablesFromDb(): Observable<Timetables> {
-        val timetables = getAllTimetables()
-        if(timetables.isEmpty()) return Observable.error(Exception("No Credentials"))
-        else return handleTimetableResult(Observable.just(timetables))
-    }
-
     private fun dateStringToHeaderItem(date: String): TimetableHeaderItem {
         val d = date.toDate("MM-dd-yyyy")
         return TimetableHeaderItem(d?.format("EEEE") ?: "", d ?: Date())
     }
 
-    fun exportCalendar(contentResolver: ContentResolver, index: Int, calendarId: Long) {
-        val timetables = getNotHiddenTimetables().toCollection(ArrayList())
-        val eventsToExport = ArrayList<Pair<Date, Timetable>>()
-
-        when(index) {
-            0 -> {
-                timetables.forEach { timetable -> getLessonDaysAsDates(timetable.lessonDays).forEach {
-                    if(it[Calendar.WEEK_OF_YEAR]==currentWeek) eventsToExport.add(Pair(it.time, timetable))
-                } }
-            }
-            1 -> {
-                timetables.forEach { timetable -> getLessonDaysAsDates(timetable.lessonDays).forEach {
-                    if(it[Calendar.WEEK_OF_YEAR]==currentWeek+1) eventsToExport.add(Pair(it.time, timetable))
-                } }
+    /**
+     * Exports the lessons of the current week (index 0), next week (1) or the whole semester (2).
+     * Emits the progress as pair of processed and total calendar operations.
+     */
+    fun exportCalendar(contentResolver: ContentResolver, index: Int, calendarId: Long): Observable<Pair<Int, Int>> {
+        return Observable.create<Pair<Int, Int>> { emitter ->
+            val occurrences = getNotHiddenTimetables().flatMap { timetable ->
+                timetable.lessonDays.mapNotNull { it.toDate("MM-dd-yyyy") }.map { CalendarOccurrence(timetable, it) }
             }
-            2 -> {
-                timetables.forEach { timetable -> getLessonDaysAsDates(timetable.lessonDays).forEach {
-                    eventsToExport.add(Pair(it.time, timetable))
-                } }
+            val eventsToExport = when (index) {
+                0 -> occurrences.filter { it.day.calendar[Calendar.WEEK_OF_YEAR] == currentWeek }
+                1 -> occurrences.filter { it.day.calendar[Calendar.WEEK_OF_YEAR] == currentWeek + 1 }
+                else -> occurrences
             }
-        }
-
-        eventsToExport.forEach {
-            val values = ContentValues().apply {
-                val startTime = it.first.calendar.addTime(it.second.beginTime)
-                val endTime = it.first.calendar.addTime(it.second.endTime)
-                put(CalendarContract.Events.DTSTART, startTime.timeInMillis)
-                put(CalendarContract.Events.DTEND, endTime.timeInMillis)
-                put(CalendarContract.Events.TITLE, it.second.name)
-                put(CalendarContract.Events.DESCRIPTION, it.second.createDescriptionForCalendar())
-                put(CalendarContract.Events.CALENDAR_ID, calendarId)
-                put(
-                    CalendarContract.Events.EVENT_TIMEZONE,
-                    it.first.calendar.timeZone.toString()
-                )
+            CalendarExporter(contentResolver, calendarId).export(eventsToExport, occurrences.map { it.key }.toHashSet()) { done, total ->
+                emitter.onNext(done to total)
             }
-            val uri = contentResolver.insert(CalendarContract.Events.CONTENT_URI, values)
-        }
+            emitter.onComplete()
+        }.runInThread(Schedulers.io())
     }
 
-    private fun getLessonDaysAsDates(lessonDays: List<String>) : List<Calendar> =
-        lessonDays.mapNotNull { it.toDate("MM-dd-yyyy")}.map { it.calendar }
-
     suspend fun getElectiveTimetables() = withContext(Dispatchers.IO) {
         RestApi.timetableEndpoint.getAllTimetable()
     }
@@ -183,4 +223,11 @@ class TimetableViewModel: ViewModel() {
         _searchTerm.value = query
     }
 
+    override fun onCleared() {
+        super.onCleared()
+        timetableRealms?.let {
+            it.removeAllChangeListeners()
+            closeRealm(this, realm)
+        }
+    }
 }
\ No newline at end of file
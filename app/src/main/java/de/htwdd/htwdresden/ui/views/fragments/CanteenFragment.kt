@@ -1,5 +1,7 @@
 package de.htwdd.htwdresden.ui.views.fragments
 
+import android.Manifest
+import android.content.pm.PackageManager
 import android.os.Bundle
 import android.view.View
 import androidx.core.os.bundleOf
@@ -8,15 +10,22 @@ import androidx.navigation.fragment.findNavController
 import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.adapter.CanteenItemAdapter
 import de.htwdd.htwdresden.adapter.Canteens
+import de.htwdd.htwdresden.network.CanteenRepository
 import de.htwdd.htwdresden.ui.viewmodels.fragments.CanteenViewModel
 import de.htwdd.htwdresden.utils.extensions.*
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
 import kotlinx.android.synthetic.main.fragment_canteen.*
 import kotlinx.android.synthetic.main.layout_empty_view.*
 import kotlin.properties.Delegates
 
 class CanteenFragment: Fragment(R.layout.fragment_canteen) {
 
+    companion object {
+        private const val PERMISSION_REQUEST_CODE = 20
+    }
+
     private val viewModel by lazy { getViewModel<CanteenViewModel>() }
+    private val cph by lazy { CryptoSharedPreferencesHolder.instance }
     private lateinit var adapter: CanteenItemAdapter
     private val items: Canteens = ArrayList()
     private var isRefreshing: Boolean by Delegates.observable(true) { _, _, new ->
@@ -29,7 +38,7 @@ class CanteenFragment: Fragment(R.layout.fragment_canteen) {
     }
 
     private fun setup() {
-        swipeRefreshLayout.setOnRefreshListener { request() }
+        swipeRefreshLayout.setOnRefreshListener { request(true) }
         adapter = CanteenItemAdapter(items)
         canteenRecycler.adapter = adapter
         adapter.onItemClick {
@@ -38,10 +47,25 @@ class CanteenFragment: Fragment(R.layout.fragment_canteen) {
                 bundleOf(MealsPagerFragment.ARG_TITLE to it.name, MealsPagerFragment.ARG_ID to it.id))
         }
         request()
+        askForLocation()
+    }
+
+    // asked once, without the permission the canteens are sorted by distance to the main campus
+    private fun askForLocation() {
+        if (cph.wasLocationAsked()) return
+        cph.setLocationAsked()
+        requestPermissions(arrayOf(Manifest.permission.ACCESS_COARSE_LOCATION), PERMISSION_REQUEST_CODE)
+    }
+
+    override fun onRequestPermissionsResult(requestCode: Int, permissions: Array<out String>, grantResults: IntArray) {
+        if (requestCode == PERMISSION_REQUEST_CODE && grantResults.firstOrNull() == PackageManager.PERMISSION_GRANTED) {
+            request()
+        }
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults)
     }
 
-    private fun request() {
-        viewModel.request()
+    private fun request(refresh: Boolean = false) {
+        viewModel.request(CanteenRepository.lastKnownPosition(requireContext()), refresh)
             .runInUiThread()
             .doOnSubscribe { isRefreshing = true }
             .doOnTerminate { isRefreshing = false }
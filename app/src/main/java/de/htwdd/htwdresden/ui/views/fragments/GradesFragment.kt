@@ -32,7 +32,7 @@ class GradesFragment: Fragment(R.layout.fragment_grades) {
 
     @SuppressLint("SetTextI18n")
     private fun setup() {
-        swipeRefreshLayout.setOnRefreshListener { request() }
+        swipeRefreshLayout.setOnRefreshListener { request(true) }
         adapter = GradeItemAdapter(items)
         gradesRecycler.adapter = adapter
         adapter.onEmpty {
@@ -61,16 +61,20 @@ class GradesFragment: Fragment(R.layout.fragment_grades) {
             .addTo(disposeBag)
     }
 
-    private fun request() {
+    private fun request(refresh: Boolean = false) {
         try {
-            viewModel.requestGrades()
+            viewModel.requestGrades(refresh)
                 .runInUiThread()
                 .doOnSubscribe { isRefreshing = true }
                 .doOnTerminate { isRefreshing = false }
                 .subscribe(
-                    { grades ->
+                    { (grades, changed) ->
                     weak { self ->
-                        self.adapter.update(grades)
+                        if (changed == null || self.adapter.itemCount != grades.size) {
+                            self.adapter.update(grades)
+                        } else {
+                            self.adapter.update(grades, changed)
+                        }
                     }
                 },
                     {
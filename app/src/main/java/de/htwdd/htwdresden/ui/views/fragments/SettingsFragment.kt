@@ -1,7 +1,10 @@
 package de.htwdd.htwdresden.ui.views.fragments
 
+import android.app.NotificationManager
+import android.content.Intent
 import android.os.Build
 import android.os.Bundle
+import android.provider.Settings
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
@@ -11,10 +14,16 @@ import androidx.databinding.DataBindingUtil
 import androidx.fragment.app.Fragment
 import androidx.navigation.fragment.findNavController
 import com.afollestad.materialdialogs.MaterialDialog
+import com.afollestad.materialdialogs.list.listItemsMultiChoice
+import com.afollestad.materialdialogs.list.listItemsSingleChoice
+import de.htwdd.htwdresden.BuildConfig
 import de.htwdd.htwdresden.R
 import de.htwdd.htwdresden.databinding.FragmentSettingsBinding
+import de.htwdd.htwdresden.network.NetworkMetrics
+import de.htwdd.htwdresden.network.PersistentCache
 import de.htwdd.htwdresden.ui.models.*
 import de.htwdd.htwdresden.ui.viewmodels.fragments.SettingsViewModel
+import de.htwdd.htwdresden.utils.AutoMute
 import de.htwdd.htwdresden.utils.extensions.error
 import de.htwdd.htwdresden.utils.extensions.getViewModel
 import de.htwdd.htwdresden.utils.extensions.isElective
@@ -49,12 +58,12 @@ class SettingsFragment : Fragment() {
         viewModel.apply {
             try {
                 val packageInfo = context?.packageManager?.getPackageInfo(context?.packageName ?: "de.htwdd.htwdresden", 0)
-                verbose("${packageInfo?.versionName}")
+                verbose { "${packageInfo?.versionName}" }
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                    verbose("${packageInfo?.longVersionCode}")
+                    verbose { "${packageInfo?.longVersionCode}" }
                 } else {
                     @Suppress("DEPRECATION")
-                    verbose("${packageInfo?.versionCode}")
+                    verbose { "${packageInfo?.versionCode}" }
                 }
 
             } catch (e: Exception) {
@@ -100,6 +109,7 @@ class SettingsFragment : Fragment() {
                     message(R.string.delete_all_saved_data_question)
                     positiveButton(R.string.general_delete) {
                         cph.clear()
+                        PersistentCache.clear()
                         deleteAllTimetable()
                         findNavController().navigate(R.id.onboarding_page_fragment)
                     }
@@ -139,6 +149,57 @@ class SettingsFragment : Fragment() {
             onLoginClick {
                 findNavController().navigate(R.id.action_to_login_page_fragment)
             }
+
+            onDietFilterClick {
+                MaterialDialog(requireContext()).show {
+                    title(R.string.diet_filter)
+                    listItemsMultiChoice(
+                        R.array.diet_filter_options,
+                        initialSelection = cph.getDietFilter().selection(),
+                        allowEmptySelection = true
+                    ) { _, indices, _ ->
+                        cph.putDietFilter(DietFilter.fromSelection(indices))
+                    }
+                    positiveButton(R.string.general_apply)
+                    negativeButton(R.string.general_cancel)
+                }
+            }
+
+            onAutoMuteModeClick {
+                MaterialDialog(requireContext()).show {
+                    title(R.string.auto_mute_mode)
+                    listItemsSingleChoice(
+                        R.array.auto_mute_mode_options,
+                        initialSelection = cph.getAutoMuteMode()
+                    ) { _, index, _ ->
+                        cph.setAutoMute(true, index)
+                        if (index == AutoMute.MODE_SILENT) requestNotificationPolicyAccess()
+                    }
+                    positiveButton(R.string.general_apply)
+                    negativeButton(R.string.general_cancel)
+                }
+            }
+
+            onNetworkMetricsClick {
+                if (!BuildConfig.DEBUG) return@onNetworkMetricsClick
+                val json = NetworkMetrics.toJson()
+                verbose { json }
+                MaterialDialog(requireContext()).show {
+                    title(R.string.debug_network_metrics)
+                    message(text = json) { messageTextView.setTextIsSelectable(true) }
+                    positiveButton(R.string.general_close)
+                    negativeButton(R.string.general_reset) { NetworkMetrics.reset() }
+                }
+            }
+        }
+    }
+
+    // silent mode may only be set with the do not disturb access
+    private fun requestNotificationPolicyAccess() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return
+        val notificationManager = requireContext().getSystemService(NotificationManager::class.java)
+        if (notificationManager?.isNotificationPolicyAccessGranted == false) {
+            startActivity(Intent(Settings.ACTION_NOTIFICATION_POLICY_ACCESS_SETTINGS))
         }
     }
-}
\ No newline at end of file
+}
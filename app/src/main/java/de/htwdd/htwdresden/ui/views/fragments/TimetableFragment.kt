@@ -10,7 +10,6 @@ import android.provider.CalendarContract.Calendars
 import android.text.Html
 import android.text.method.LinkMovementMethod
 import android.view.*
-import android.widget.Toast
 import androidx.core.app.ActivityCompat
 import androidx.core.os.bundleOf
 import android.widget.TextView
@@ -83,11 +82,14 @@ class TimetableFragment: Fragment(R.layout.fragment_timetable) {
             request()
         }
         adapter.onItemClick {
-            if(it is TimetableItem) {
-                val destinationTitle = if(it.item.createdByUser) activity?.resources?.getString(R.string.timetable_edit_activity_title) ?: "" else activity?.resources?.getString(R.string.timetable_event) ?: ""
-                findNavController()
-                    .navigate(R.id.action_calender_add_event_fragment, bundleOf(CalendarAddEventFragment.ARG_ID to it.item.id, CalendarAddEventFragment.ARG_TITLE to destinationTitle))
-            }
+            val timetable = when (it) {
+                is LiveTimetableItem -> it.item
+                is TimetableItem -> it.item
+                else -> null
+            } ?: return@onItemClick
+            val destinationTitle = if(timetable.createdByUser) activity?.resources?.getString(R.string.timetable_edit_activity_title) ?: "" else activity?.resources?.getString(R.string.timetable_event) ?: ""
+            findNavController()
+                .navigate(R.id.action_calender_add_event_fragment, bundleOf(CalendarAddEventFragment.ARG_ID to timetable.id, CalendarAddEventFragment.ARG_TITLE to destinationTitle))
         }
     }
 
@@ -137,6 +139,16 @@ class TimetableFragment: Fragment(R.layout.fragment_timetable) {
                 self.tvMessage.text = getString(R.string.timetable_no_results_message)
             }
         }
+        viewModel.onTimetablesChanged { timetables, changedPositions ->
+            weak { self ->
+                if (changedPositions == null) {
+                    self.adapter.update(timetables)
+                } else {
+                    self.adapter.update(timetables, changedPositions)
+                }
+            }
+        }
+        viewModel.query()
     }
 
     private fun request() {
@@ -147,15 +159,10 @@ class TimetableFragment: Fragment(R.layout.fragment_timetable) {
                 .doOnTerminate { isRefreshing = false }
                 .doOnComplete { isRefreshing = false }
                 .doOnDispose { isRefreshing = false }
-                .subscribe({ timetables ->
-                    weak { self ->
-                        if (timetables.isNotEmpty()) {
-                            self.adapter.update(timetables)
-                        }
-                    }
-                }, {
+                .subscribe({}, {
                     error(it)
                     weak { self ->
+                        if (self.items.isNotEmpty()) return@weak                                   // Keep the stored timetable
                         self.includeEmptyLayout?.show()
                         self.tvIcon?.text    = getString(R.string.exams_no_results_icon)
                         self.tvTitle?.text   = getString(R.string.exams_no_credentials_title)
@@ -293,21 +300,30 @@ class TimetableFragment: Fragment(R.layout.fragment_timetable) {
             val calendars = getCalendars(context)
             MaterialDialog(context, BottomSheet(LayoutMode.WRAP_CONTENT)).title(R.string.export_calendar_list).show {
                     listItems(items = calendars.map { it.value }) { _, index, _ ->
-                        (activity as Context?)?.let {
-                            val calendarId = calendars.keys.toCollection(ArrayList())[index]
-                            try {
-                                viewModel.exportCalendar(context.contentResolver, optionIndex, calendarId)
-                                Toast.makeText(it, R.string.export_success_message, Toast.LENGTH_SHORT).show()
-                            } catch (e: Exception) {
-                                e.printStackTrace()
-                                Toast.makeText(it, R.string.export_failure_message, Toast.LENGTH_SHORT).show()
-                            }
-                        }
+                        val calendarId = calendars.keys.toCollection(ArrayList())[index]
+                        exportCalendar(context, optionIndex, calendarId)
                     }
                 }
         }
     }
 
+    private fun exportCalendar(context: Context, optionIndex: Int, calendarId: Long) {
+        val progressDialog = MaterialDialog(context).title(R.string.export_title).cancelable(false)
+        viewModel.exportCalendar(context.contentResolver, optionIndex, calendarId)
+            .runInUiThread()
+            .doOnSubscribe { progressDialog.show() }
+            .doFinally { progressDialog.dismiss() }
+            .subscribe({ (done, total) ->
+                progressDialog.message(text = getString(R.string.export_progress_message, done, total))
+            }, {
+                error(it)
+                context.toast(R.string.export_failure_message)
+            }, {
+                context.toast(R.string.export_success_message)
+            })
+            .addTo(disposeBag)
+    }
+
     private fun onEventClick() {
         (activity as Context?)?.let { context ->
             MaterialDialog(context, BottomSheet(LayoutMode.WRAP_CONTENT)).title(R.string.timetable_add_event).show {
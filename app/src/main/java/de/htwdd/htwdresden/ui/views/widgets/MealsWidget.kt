@@ -6,28 +6,21 @@ import android.appwidget.AppWidgetProvider
 import android.content.Context
 import android.content.Intent
 import android.net.Uri
+import android.os.Build
 import android.os.Bundle
 import android.widget.RemoteViews
 import de.htwdd.htwdresden.R
-import de.htwdd.htwdresden.network.RestApi
-import de.htwdd.htwdresden.ui.models.Meal
+import de.htwdd.htwdresden.network.CanteenRepository
 import de.htwdd.htwdresden.ui.views.activities.MainActivity
 import de.htwdd.htwdresden.utils.extensions.format
 import de.htwdd.htwdresden.utils.extensions.guard
-import de.htwdd.htwdresden.utils.extensions.runInThread
-import de.htwdd.htwdresden.utils.extensions.runInUiThread
 import io.reactivex.Observable
-import io.reactivex.disposables.CompositeDisposable
-import io.reactivex.rxkotlin.addTo
-import io.reactivex.schedulers.Schedulers
 import java.util.*
 
 class MealsWidget: AppWidgetProvider() {
 
     companion object {
 
-        private val disposable = CompositeDisposable()
-
         fun updateAppWidget(
             context: Context?,
             appWidgetManager: AppWidgetManager?,
@@ -37,48 +30,31 @@ class MealsWidget: AppWidgetProvider() {
             appWidgetManager.guard { return }
             val views = RemoteViews(context!!.packageName, R.layout.widget_meals)
             views.setTextViewText(R.id.tvDate, Date().format("dd. MMMM"))
+            views.setRemoteAdapter(R.id.lvMeals, WidgetRowsService.intent(context, WidgetType.Meals, appWidgetId))
 
             val intent = Intent(context, MainActivity::class.java).apply {
                 data = Uri.parse("htw://meals")
                 flags = Intent.FLAG_ACTIVITY_NEW_TASK
             }
-            views.setOnClickPendingIntent(R.id.widget_meals_layout, PendingIntent.getActivity(context, PendingIntent.FLAG_UPDATE_CURRENT, intent, 0))
-
-            request()
-                .runInUiThread()
-                .subscribe({ meals ->
-                    @Suppress("SENSELESS_COMPARISON")
-                    if (context != null) {
-                        views.removeAllViews(R.id.llMeals)
-                        meals.forEach { meal ->
-                            val entryView = RemoteViews(context.packageName, R.layout.widget_meals_entry)
-                            entryView.setTextViewText(R.id.tvMealName, meal.name)
-                            entryView.setTextViewText(R.id.tvMealPrice, context.getString(R.string.mensa_euro_widget, meal.prices.students ?: 0.00))
-                            views.addView(R.id.llMeals, entryView)
-                        }
-                        appWidgetManager?.updateAppWidget(appWidgetId, views)
-                    }
-                }, {
-                    @Suppress("SENSELESS_COMPARISON")
-                    if (context != null) {
-                        views.removeAllViews(R.id.llMeals)
-                        val entryView = RemoteViews(context.packageName, R.layout.widget_meals_entry)
-                        entryView.setTextViewText(R.id.tvMealName, context.getString(R.string.info_internet_no_connection))
-                        views.addView(R.id.llMeals, entryView)
-                        appWidgetManager?.updateAppWidget(appWidgetId, views)
-                    }
-                }).addTo(disposable)
+            views.setOnClickPendingIntent(R.id.widget_meals_layout, PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE))
+            // rows fill in an empty intent, the template has to stay mutable for that
+            val templateFlags = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) PendingIntent.FLAG_MUTABLE else 0
+            views.setPendingIntentTemplate(R.id.lvMeals, PendingIntent.getActivity(context, 1, intent, PendingIntent.FLAG_UPDATE_CURRENT or templateFlags))
 
             appWidgetManager!!.updateAppWidget(appWidgetId, views)
         }
 
-        private fun request(): Observable<List<Meal>> {
-            return RestApi
-                .canteenEndpoint
-                .getMeals("80", Date().format("yyyy-MM-dd"))
-                .runInThread(Schedulers.io())
-                .map { it.map { jMeal -> Meal.from(jMeal) } }
-        }
+        /**
+         * Rows of the meals today, requested and refreshed by [WidgetUpdates].
+         */
+        fun snapshot(context: Context): Observable<WidgetSnapshot> = CanteenRepository
+            .meals("80", Date().format("yyyy-MM-dd"))
+            .map { meals ->
+                val rows = meals.map { meal ->
+                    WidgetSnapshot.Row(meal.name, context.getString(R.string.mensa_euro_widget, meal.prices.students ?: 0.00))
+                }
+                WidgetSnapshot(WidgetSnapshot.today(), rows)
+            }
     }
 
     override fun onUpdate(
@@ -90,6 +66,7 @@ class MealsWidget: AppWidgetProvider() {
         appWidgetIds?.forEach {
             updateAppWidget(context, appWidgetManager, it)
         }
+        WidgetUpdates.request(WidgetType.Meals)
     }
 
     override fun onAppWidgetOptionsChanged(
@@ -99,6 +76,7 @@ class MealsWidget: AppWidgetProvider() {
         newOptions: Bundle?
     ) {
         updateAppWidget(context, appWidgetManager, appWidgetId)
+        WidgetUpdates.request(WidgetType.Meals)
         super.onAppWidgetOptionsChanged(context, appWidgetManager, appWidgetId, newOptions)
     }
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import android.appwidget.AppWidgetProvider
 import android.content.Context
 import android.content.Intent
 import android.net.Uri
+import android.os.Build
 import android.os.Bundle
 import android.widget.RemoteViews
 import de.htwdd.htwdresden.R
@@ -14,9 +15,7 @@ import de.htwdd.htwdresden.ui.models.Timetable
 import de.htwdd.htwdresden.ui.views.activities.MainActivity
 import de.htwdd.htwdresden.utils.extensions.*
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
-import io.reactivex.disposables.CompositeDisposable
-import io.reactivex.rxkotlin.addTo
-import io.reactivex.schedulers.Schedulers
+import io.reactivex.Observable
 import java.util.*
 
 class TimetableWidget: AppWidgetProvider() {
@@ -24,7 +23,6 @@ class TimetableWidget: AppWidgetProvider() {
     companion object {
 
         private val cph = CryptoSharedPreferencesHolder.instance
-        private val disposable = CompositeDisposable()
 
         fun updateAppWidget(
             context: Context?,
@@ -36,60 +34,35 @@ class TimetableWidget: AppWidgetProvider() {
 
             val views = RemoteViews(context!!.packageName, R.layout.widget_timetable)
             views.setTextViewText(R.id.tvDate, Date().format("dd. MMMM"))
+            views.setRemoteAdapter(R.id.lvTimetable, WidgetRowsService.intent(context, WidgetType.Timetable, appWidgetId))
 
             val intent = Intent(context, MainActivity::class.java).apply {
                 data = if (cph.getStudyAuth() == null) { Uri.parse("htw://studygroup") } else { Uri.parse("htw://timetable") }
                 flags = Intent.FLAG_ACTIVITY_NEW_TASK
             }
-            val pendingIntent = PendingIntent.getActivity(context, 0,intent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE);
-            views.setOnClickPendingIntent(R.id.widget_timetable_layout, pendingIntent)
-
-            // request time table for actual day
-            request(context, appWidgetManager, appWidgetId, views)
-
-
-            // On Studyauth token change, refresh
-            cph.onChanged().runInUiThread().subscribe {
-                when (it) {
-                    is CryptoSharedPreferencesHolder.SubscribeType.StudyToken -> request(context, appWidgetManager, appWidgetId, views)
-                }
-            }.addTo(disposable)
+            views.setOnClickPendingIntent(R.id.widget_timetable_layout, PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE))
+            // rows fill in an empty intent, the template has to stay mutable for that
+            val templateFlags = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) PendingIntent.FLAG_MUTABLE else 0
+            views.setPendingIntentTemplate(R.id.lvTimetable, PendingIntent.getActivity(context, 1, intent, PendingIntent.FLAG_UPDATE_CURRENT or templateFlags))
 
             appWidgetManager!!.updateAppWidget(appWidgetId, views)
         }
 
-        private fun request(context: Context?, appWidgetManager: AppWidgetManager?, appWidgetId: Int, views: RemoteViews) {
+        /**
+         * Rows of the lessons today, requested and refreshed by [WidgetUpdates].
+         */
+        fun snapshot(): Observable<WidgetSnapshot> {
             val auth = cph.getStudyAuth()
-            RestApi.timetableEndpoint
+            return RestApi.timetableEndpoint
                 .timetable(auth?.group ?: "", auth?.major ?: "", auth?.studyYear ?: "")
-                .runInThread(Schedulers.io())
                 .map { it.map { jTimetable -> Timetable.from(jTimetable) } }
                 .map { it.filter { timetable -> timetable.lessonDays.contains(Date().format("MM-dd-yyyy")) } }
-                .runInUiThread()
-                .subscribe({ timetables ->
-                    context.guard { return@subscribe }
-                    views.removeAllViews(R.id.llTimetable)
-                    if (timetables.isNotEmpty()) {
-                        timetables.sortedWith(compareBy { it.beginTime }).forEach { timetable ->
-                            val entryView = RemoteViews(context!!.packageName, R.layout.widget_timetable_entry)
-                            entryView.setTextViewText(R.id.tvTime, "${timetable.beginTime.format("HH:mm")} - ${timetable.endTime.format("HH:mm")}")
-                            entryView.setTextViewText(R.id.tvTimetableName, timetable.name)
-                            views.addView(R.id.llTimetable, entryView)
-                        }
-                    } else {
-                        val entryView = RemoteViews(context!!.packageName, R.layout.widget_timetable_empty_entry)
-                        views.addView(R.id.llTimetable, entryView)
+                .map { timetables ->
+                    val rows = timetables.sortedWith(compareBy { it.beginTime }).map { timetable ->
+                        WidgetSnapshot.Row("${timetable.beginTime.format("HH:mm")} - ${timetable.endTime.format("HH:mm")}", timetable.name)
                     }
-                    appWidgetManager?.updateAppWidget(appWidgetId, views)
-                }, {
-                    error(it)
-                    context.guard { return@subscribe }
-                    views.removeAllViews(R.id.llTimetable)
-                    val entryView = RemoteViews(context!!.packageName, R.layout.widget_timetable_error_entry)
-                    views.addView(R.id.llTimetable, entryView)
-                    appWidgetManager?.updateAppWidget(appWidgetId, views)
-                })
-                .addTo(disposable)
+                    WidgetSnapshot(WidgetSnapshot.today(), rows)
+                }
         }
     }
 
@@ -102,6 +75,7 @@ class TimetableWidget: AppWidgetProvider() {
         appWidgetIds?.forEach {
             updateAppWidget(context, appWidgetManager, it)
         }
+        WidgetUpdates.request(WidgetType.Timetable)
     }
 
     override fun onAppWidgetOptionsChanged(
@@ -111,6 +85,7 @@ class TimetableWidget: AppWidgetProvider() {
         newOptions: Bundle?
     ) {
         updateAppWidget(context, appWidgetManager, appWidgetId)
+        WidgetUpdates.request(WidgetType.Timetable)
         super.onAppWidgetOptionsChanged(context, appWidgetManager, appWidgetId, newOptions)
     }
-}
\ No newline at end of file
+}
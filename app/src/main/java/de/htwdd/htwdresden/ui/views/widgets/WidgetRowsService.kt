@@ -0,0 +1,90 @@
+package de.htwdd.htwdresden.ui.views.widgets
+
+import android.content.Context
+import android.content.Intent
+import android.net.Uri
+import android.widget.RemoteViews
+import android.widget.RemoteViewsService
+import de.htwdd.htwdresden.R
+
+/**
+ * Serves the rows of the collection widgets. The launcher binds only the visible rows, a refresh of the provider calls
+ * `notifyAppWidgetViewDataChanged` and the factory reloads the [WidgetSnapshot].
+ */
+class WidgetRowsService: RemoteViewsService() {
+
+    companion object {
+        private const val EXTRA_TYPE = "widgetType"
+
+        /**
+         * Adapter intent of one widget, the data makes it unique so every widget gets its own factory.
+         */
+        fun intent(context: Context, type: WidgetType, appWidgetId: Int) = Intent(context, WidgetRowsService::class.java).apply {
+            putExtra(EXTRA_TYPE, type.name)
+            data = Uri.parse("htw-widget://${type.key}/$appWidgetId")
+        }
+    }
+
+    override fun onGetViewFactory(intent: Intent): RemoteViewsFactory {
+        val type = intent.getStringExtra(EXTRA_TYPE)?.let { WidgetType.valueOf(it) } ?: WidgetType.Timetable
+        return WidgetRowsFactory(applicationContext, type)
+    }
+}
+
+class WidgetRowsFactory(private val context: Context, private val type: WidgetType): RemoteViewsService.RemoteViewsFactory {
+
+    private var rows = emptyList<WidgetSnapshot.Row>()
+    private var failed = false
+    // a single row telling why there are no rows
+    private var hasMessage = false
+
+    override fun onCreate() {}
+
+    // runs on a binder thread, reading the snapshot from disk is fine here
+    override fun onDataSetChanged() {
+        val snapshot = WidgetSnapshots.read(type)?.takeIf { it.isToday }
+        rows = snapshot?.rows ?: emptyList()
+        failed = snapshot?.failed == true
+        hasMessage = failed || (snapshot != null && rows.isEmpty() && type == WidgetType.Timetable)
+    }
+
+    override fun onDestroy() {
+        rows = emptyList()
+    }
+
+    override fun getCount() = if (hasMessage) 1 else rows.size
+
+    override fun getViewAt(position: Int): RemoteViews {
+        val views = if (hasMessage) messageViews() else rowViews(rows[position])
+        views.setOnClickFillInIntent(R.id.widget_row, Intent())
+        return views
+    }
+
+    private fun rowViews(row: WidgetSnapshot.Row) = when (type) {
+        WidgetType.Timetable -> RemoteViews(context.packageName, R.layout.widget_timetable_entry).apply {
+            setTextViewText(R.id.tvTime, row.title)
+            setTextViewText(R.id.tvTimetableName, row.detail)
+        }
+        WidgetType.Meals -> RemoteViews(context.packageName, R.layout.widget_meals_entry).apply {
+            setTextViewText(R.id.tvMealName, row.title)
+            setTextViewText(R.id.tvMealPrice, row.detail)
+        }
+    }
+
+    private fun messageViews() = when (type) {
+        WidgetType.Timetable -> RemoteViews(context.packageName, if (failed) R.layout.widget_timetable_error_entry else R.layout.widget_timetable_empty_entry)
+        WidgetType.Meals -> RemoteViews(context.packageName, R.layout.widget_meals_entry).apply {
+            setTextViewText(R.id.tvMealName, context.getString(R.string.info_internet_no_connection))
+            setTextViewText(R.id.tvMealPrice, "")
+        }
+    }
+
+    override fun getLoadingView(): RemoteViews? = null
+
+    // entry, empty and error rows
+    override fun getViewTypeCount() = 3
+
+    override fun getItemId(position: Int) = position.toLong()
+
+    override fun hasStableIds() = false
+}
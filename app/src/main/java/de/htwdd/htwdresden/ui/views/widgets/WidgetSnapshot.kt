@@ -0,0 +1,40 @@
+package de.htwdd.htwdresden.ui.views.widgets
+
+import com.google.gson.reflect.TypeToken
+import de.htwdd.htwdresden.network.PersistentCache
+import de.htwdd.htwdresden.utils.extensions.format
+import java.util.*
+
+/**
+ * Rows a widget shows on [day] (yyyy-MM-dd), already formatted. The provider writes the snapshot after each refresh,
+ * the [WidgetRowsFactory] reads it when the launcher asks for the rows.
+ */
+data class WidgetSnapshot(
+    val day: String,
+    val rows: List<Row>,
+    val failed: Boolean = false
+) {
+    data class Row(val title: String, val detail: String)
+
+    val isToday get() = day == today()
+
+    companion object {
+        fun today() = Date().format("yyyy-MM-dd")
+    }
+}
+
+enum class WidgetType(val key: String) {
+    Timetable("timetable"),
+    Meals("meals")
+}
+
+object WidgetSnapshots {
+
+    private val snapshotType = object: TypeToken<WidgetSnapshot>() {}
+
+    private fun key(type: WidgetType) = "widget_${type.key}"
+
+    fun read(type: WidgetType) = PersistentCache.read(key(type), snapshotType)?.value
+
+    fun write(type: WidgetType, snapshot: WidgetSnapshot) = PersistentCache.write(key(type), snapshot)
+}
@@ -0,0 +1,101 @@
+package de.htwdd.htwdresden.ui.views.widgets
+
+import android.appwidget.AppWidgetManager
+import android.content.ComponentName
+import android.content.Context
+import de.htwdd.htwdresden.R
+import de.htwdd.htwdresden.utils.extensions.error
+import de.htwdd.htwdresden.utils.extensions.info
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import io.reactivex.Observable
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.subjects.PublishSubject
+import java.util.concurrent.TimeUnit
+
+data class WidgetUpdateMetrics(
+    val requests: Long = 0,
+    val refreshes: Long = 0,
+    val failures: Long = 0,
+    val lastRefreshMillis: Long = 0
+)
+
+/**
+ * Coordinates the refreshes of the widgets. Providers only [request] a refresh, a burst of `onUpdate` and
+ * `onAppWidgetOptionsChanged` calls is debounced into one refresh per [WidgetType]. The process keeps exactly one
+ * subscription to the preference changes, so a new study group refreshes the timetable once.
+ */
+object WidgetUpdates {
+
+    private const val DEBOUNCE_MILLIS = 500L
+
+    private lateinit var context: Context
+    private val requests = PublishSubject.create<WidgetType>().toSerialized()
+    private val metrics = mutableMapOf<WidgetType, WidgetUpdateMetrics>()
+
+    fun init(context: Context) {
+        if (::context.isInitialized) return
+        this.context = context.applicationContext
+
+        requests
+            .groupBy { it }
+            .flatMap { type -> type.debounce(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS, Schedulers.computation()).switchMap { refresh(it) } }
+            .subscribe({ notifyRows(it) }, { error(it) })
+
+        CryptoSharedPreferencesHolder.instance.onChanged()
+            .filter { it is CryptoSharedPreferencesHolder.SubscribeType.StudyToken }
+            .subscribe { request(WidgetType.Timetable) }
+    }
+
+    fun request(type: WidgetType) {
+        if (!::context.isInitialized) return
+        count(type) { copy(requests = requests + 1) }
+        requests.onNext(type)
+    }
+
+    @Synchronized
+    fun snapshot(): Map<WidgetType, WidgetUpdateMetrics> = metrics.toSortedMap()
+
+    private fun refresh(type: WidgetType): Observable<WidgetType> {
+        // nothing to refresh without a placed widget, e.g. for study group changes
+        if (ids(type).isEmpty()) return Observable.empty()
+        val start = System.currentTimeMillis()
+        val source = when (type) {
+            WidgetType.Timetable -> TimetableWidget.snapshot()
+            WidgetType.Meals -> MealsWidget.snapshot(context)
+        }
+        return source
+            .subscribeOn(Schedulers.io())
+            .onErrorReturn {
+                error(it)
+                count(type) { copy(failures = failures + 1) }
+                WidgetSnapshot(WidgetSnapshot.today(), emptyList(), failed = true)
+            }
+            .map {
+                WidgetSnapshots.write(type, it)
+                count(type) { copy(refreshes = refreshes + 1, lastRefreshMillis = System.currentTimeMillis() - start) }
+                info { "widget ${type.key}: ${snapshot()[type]}" }
+                type
+            }
+    }
+
+    private fun notifyRows(type: WidgetType) {
+        val list = when (type) {
+            WidgetType.Timetable -> R.id.lvTimetable
+            WidgetType.Meals -> R.id.lvMeals
+        }
+        AppWidgetManager.getInstance(context).notifyAppWidgetViewDataChanged(ids(type), list)
+    }
+
+    private fun ids(type: WidgetType): IntArray {
+        val provider = when (type) {
+            WidgetType.Timetable -> TimetableWidget::class.java
+            WidgetType.Meals -> MealsWidget::class.java
+        }
+        return AppWidgetManager.getInstance(context).getAppWidgetIds(ComponentName(context, provider))
+    }
+
+    @Synchronized
+    private fun count(type: WidgetType, update: WidgetUpdateMetrics.() -> WidgetUpdateMetrics) {
+        metrics[type] = (metrics[type] ?: WidgetUpdateMetrics()).update()
+    }
+}
@@ -0,0 +1,130 @@
+package de.htwdd.htwdresden.utils
+
+import android.app.AlarmManager
+import android.app.PendingIntent
+import android.content.Context
+import android.content.Intent
+import android.content.SharedPreferences
+import android.media.AudioManager
+import android.os.Build
+import androidx.annotation.WorkerThread
+import androidx.core.content.edit
+import de.htwdd.htwdresden.receivers.AutoMuteReceiver
+import de.htwdd.htwdresden.ui.models.withNotHiddenTimetableRealms
+import de.htwdd.htwdresden.utils.extensions.error
+import de.htwdd.htwdresden.utils.extensions.info
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import io.reactivex.Completable
+import io.reactivex.schedulers.Schedulers
+import java.util.*
+
+/**
+ * Mutes the phone during lessons. Only the next transition of the [MuteSchedule] is scheduled as a single exact alarm,
+ * the [AutoMuteReceiver] applies it and schedules the one after. The ringer mode the user had is restored on unmute,
+ * unless the user changed the mode in the meantime.
+ */
+object AutoMute {
+
+    const val MODE_VIBRATE              = 0
+    const val MODE_SILENT               = 1
+
+    const val ACTION                    = "de.htwdd.htwdresden.autoMute"
+    private const val PREFERENCES       = "htw_auto_mute"
+    private const val PREVIOUS_MODE     = "PREVIOUS_MODE"
+    private const val MUTED_MODE        = "MUTED_MODE"
+
+    private lateinit var context: Context
+    private lateinit var preferences: SharedPreferences
+    private val cph by lazy { CryptoSharedPreferencesHolder.instance }
+
+    fun init(context: Context) {
+        this.context = context.applicationContext
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+    }
+
+    /**
+     * Schedules the next transition on an io thread, e.g. after the timetable changed. With [apply] the ringer mode is
+     * set for the current time as well.
+     */
+    fun reschedule(apply: Boolean = false) {
+        if (!::context.isInitialized) return
+        Completable.fromAction { update(apply) }
+            .subscribeOn(Schedulers.io())
+            .subscribe({}, { error(it) })
+    }
+
+    @WorkerThread
+    fun update(apply: Boolean) {
+        val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
+        val alarm = alarm()
+        if (!cph.hasAutoMute()) {
+            alarmManager.cancel(alarm)
+            restore()
+            return
+        }
+
+        val zone = TimeZone.getDefault()
+        val schedule = withNotHiddenTimetableRealms { MuteSchedule.of(it, zone) }
+        val now = WallClock.toMinute(System.currentTimeMillis(), zone)
+        if (apply) {
+            if (schedule.isMuted(now)) mute() else restore()
+        }
+
+        val next = schedule.next(now)
+        info { "auto mute: ${schedule.size} intervals, next $next" }
+        if (next == null) {
+            alarmManager.cancel(alarm)
+            return
+        }
+        val at = WallClock.toMillis(next.minute, zone)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, at, alarm)
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, at, alarm)
+        }
+    }
+
+    // one request code, a new alarm replaces the pending one
+    private fun alarm(): PendingIntent = PendingIntent.getBroadcast(
+        context,
+        0,
+        Intent(context, AutoMuteReceiver::class.java).setAction(ACTION),
+        PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
+
+    private fun mute() {
+        if (preferences.contains(PREVIOUS_MODE)) return
+        val audioManager = context.getSystemService(Context.AUDIO_SERVICE) as AudioManager
+        val previous = audioManager.ringerMode
+        // already quiet, nothing to restore later
+        if (previous == AudioManager.RINGER_MODE_SILENT) return
+        val target = if (cph.getAutoMuteMode() == MODE_SILENT) AudioManager.RINGER_MODE_SILENT else AudioManager.RINGER_MODE_VIBRATE
+        if (previous == target) return
+        try {
+            audioManager.ringerMode = target
+            preferences.edit {
+                putInt(PREVIOUS_MODE, previous)
+                putInt(MUTED_MODE, target)
+            }
+        } catch (e: SecurityException) {
+            // silent needs the do not disturb access since Android N
+            error(e)
+        }
+    }
+
+    private fun restore() {
+        if (!preferences.contains(PREVIOUS_MODE)) return
+        val previous = preferences.getInt(PREVIOUS_MODE, AudioManager.RINGER_MODE_NORMAL)
+        val muted = preferences.getInt(MUTED_MODE, AudioManager.RINGER_MODE_VIBRATE)
+        preferences.edit {
+            remove(PREVIOUS_MODE)
+            remove(MUTED_MODE)
+        }
+        val audioManager = context.getSystemService(Context.AUDIO_SERVICE) as AudioManager
+        if (audioManager.ringerMode != muted) return
+        try {
+            audioManager.ringerMode = previous
+        } catch (e: SecurityException) {
+            error(e)
+        }
+    }
+}
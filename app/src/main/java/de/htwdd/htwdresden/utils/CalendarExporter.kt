@@ -0,0 +1,121 @@
+package de.htwdd.htwdresden.utils
+
+import android.content.ContentProviderOperation
+import android.content.ContentProviderResult
+import android.content.ContentResolver
+import android.content.ContentUris
+import android.content.ContentValues
+import android.provider.CalendarContract
+import de.htwdd.htwdresden.db.ExportedEvent
+import de.htwdd.htwdresden.db.getExportedEvents
+import de.htwdd.htwdresden.db.updateExportedEvents
+import de.htwdd.htwdresden.ui.models.Timetable
+import de.htwdd.htwdresden.ui.models.createDescriptionForCalendar
+import de.htwdd.htwdresden.utils.extensions.addTime
+import de.htwdd.htwdresden.utils.extensions.calendar
+import de.htwdd.htwdresden.utils.extensions.format
+import de.htwdd.htwdresden.utils.extensions.verbose
+import java.util.*
+import kotlin.collections.ArrayList
+
+//-------------------------------------------------------------------------------------------------- Occurrence
+class CalendarOccurrence(val timetable: Timetable, val day: Date) {
+    val key: String by lazy { "${timetable.id}@${day.format("yyyy-MM-dd")}" }
+    val hash: Int by lazy { 31 * timetable.contentHash + key.hashCode() }
+}
+
+//-------------------------------------------------------------------------------------------------- Exporter
+/**
+ * Exports lesson occurrences into a device calendar.
+ *
+ * Only the delta to the last export is sent, in chunks via [ContentResolver.applyBatch]: new occurrences are inserted,
+ * occurrences with a changed content hash are updated and occurrences which no longer exist are deleted.
+ * Must not be called from the main thread.
+ */
+class CalendarExporter(private val contentResolver: ContentResolver, private val calendarId: Long) {
+
+    companion object {
+        private const val BATCH_SIZE = 100
+    }
+
+    private sealed class Pending(val occurrence: String) {
+        class Insert(val item: CalendarOccurrence): Pending(item.key)
+        class Update(val item: CalendarOccurrence, val eventId: Long): Pending(item.key)
+        class Delete(occurrence: String, val eventId: Long): Pending(occurrence)
+    }
+
+    /**
+     * @param occurrences occurrences to insert or update
+     * @param existingOccurrences keys of all occurrences still in the timetable, exported events not contained are deleted
+     * @param onProgress called after each batch with the number of processed and total operations
+     */
+    fun export(occurrences: List<CalendarOccurrence>, existingOccurrences: Set<String>, onProgress: (done: Int, total: Int) -> Unit = { _, _ -> }) {
+        val exported = getExportedEvents(calendarId)
+        val queue = ArrayList<Pending>(occurrences.size)
+        occurrences.forEach { occurrence ->
+            val event = exported[occurrence.key]
+            when {
+                event == null -> queue.add(Pending.Insert(occurrence))
+                event.hash != occurrence.hash -> queue.add(Pending.Update(occurrence, event.eventId))
+            }
+        }
+        exported.filterKeys { it !in existingOccurrences }.forEach { (occurrence, event) ->
+            queue.add(Pending.Delete(occurrence, event.eventId))
+        }
+
+        var position = 0
+        while (position < queue.size) {
+            val chunk = queue.subList(position, minOf(position + BATCH_SIZE, queue.size)).toList()
+            val results = contentResolver.applyBatch(CalendarContract.AUTHORITY, chunk.mapTo(ArrayList()) { it.toOperation() })
+            queue.addAll(handleResults(chunk, results))
+            position += chunk.size
+            onProgress(position, queue.size)
+        }
+        verbose { "synced ${queue.size} of ${occurrences.size} occurrences into calendar $calendarId" }
+    }
+
+    /**
+     * Stores the event ids and content hashes of the applied chunk.
+     * Returns inserts for updated events which were deleted by the user in the meantime.
+     */
+    private fun handleResults(chunk: List<Pending>, results: Array<ContentProviderResult>): List<Pending> {
+        val exported = HashMap<String, ExportedEvent>()
+        val removed = ArrayList<String>()
+        val retry = ArrayList<Pending>()
+        chunk.forEachIndexed { index, pending ->
+            val result = results.getOrNull(index)
+            when (pending) {
+                is Pending.Insert -> result?.uri?.let { exported[pending.occurrence] = ExportedEvent(ContentUris.parseId(it), pending.item.hash) }
+                is Pending.Update -> if (result?.count == 0) {
+                    removed.add(pending.occurrence)
+                    retry.add(Pending.Insert(pending.item))
+                } else {
+                    exported[pending.occurrence] = ExportedEvent(pending.eventId, pending.item.hash)
+                }
+                is Pending.Delete -> removed.add(pending.occurrence)
+            }
+        }
+        updateExportedEvents(calendarId, exported, removed)
+        return retry
+    }
+
+    private fun Pending.toOperation(): ContentProviderOperation = when (this) {
+        is Pending.Insert -> ContentProviderOperation.newInsert(CalendarContract.Events.CONTENT_URI)
+            .withValues(item.toValues())
+            .withValue(CalendarContract.Events.CALENDAR_ID, calendarId)
+            .build()
+        is Pending.Update -> ContentProviderOperation.newUpdate(ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, eventId))
+            .withValues(item.toValues())
+            .build()
+        is Pending.Delete -> ContentProviderOperation.newDelete(ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, eventId))
+            .build()
+    }
+
+    private fun CalendarOccurrence.toValues() = ContentValues().apply {
+        put(CalendarContract.Events.DTSTART, day.calendar.addTime(timetable.beginTime).timeInMillis)
+        put(CalendarContract.Events.DTEND, day.calendar.addTime(timetable.endTime).timeInMillis)
+        put(CalendarContract.Events.TITLE, timetable.name)
+        put(CalendarContract.Events.DESCRIPTION, timetable.createDescriptionForCalendar())
+        put(CalendarContract.Events.EVENT_TIMEZONE, TimeZone.getDefault().id)
+    }
+}
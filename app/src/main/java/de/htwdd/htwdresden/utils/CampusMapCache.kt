@@ -0,0 +1,119 @@
+package de.htwdd.htwdresden.utils
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Point
+import android.util.TypedValue
+import androidx.annotation.DrawableRes
+import androidx.annotation.WorkerThread
+import androidx.appcompat.content.res.AppCompatResources
+import de.htwdd.htwdresden.BuildConfig
+import de.htwdd.htwdresden.utils.extensions.info
+import java.io.File
+import java.io.OutputStream
+import kotlin.math.max
+import kotlin.math.roundToInt
+
+//-------------------------------------------------------------------------------------------------- Pyramid
+/**
+ * Levels of one map on disk, level 0 in full resolution, every further level halves width and height.
+ * All levels are PNG, so regions of them can be decoded with [android.graphics.BitmapRegionDecoder].
+ */
+class CampusMapPyramid(val levels: List<File>, val sizes: List<Point>) {
+
+    /** Smallest level which is at least [width] pixels wide, used as the always drawn base. */
+    fun baseLevel(width: Int) = sizes.indexOfLast { it.x >= width }.coerceAtLeast(0)
+}
+
+//-------------------------------------------------------------------------------------------------- Cache
+/**
+ * Renders the campus maps once per app version into [CampusMapPyramid]s in the cache directory.
+ * Vector maps are rasterized, bitmap maps are taken as they are shipped, the smaller levels are decoded subsampled.
+ */
+object CampusMapCache {
+
+    private const val DIRECTORY         = "campus_map"
+    private const val COMPLETE          = "complete"
+    // VectorDrawable caches its rendering in at most 2048 pixels, larger rasters would only be upscaled
+    private const val MAX_VECTOR_SIDE   = 2048
+    private const val MIN_LEVEL_SIDE    = 512
+
+    @WorkerThread
+    @Synchronized
+    fun pyramid(context: Context, @DrawableRes resId: Int): CampusMapPyramid {
+        val name = context.resources.getResourceEntryName(resId)
+        val root = File(context.cacheDir, DIRECTORY)
+        val directory = File(root, "$name-${BuildConfig.VERSION_CODE}")
+
+        if (!File(directory, COMPLETE).exists()) {
+            root.listFiles { file -> file.name.startsWith("$name-") }?.forEach { it.deleteRecursively() }
+            directory.mkdirs()
+            render(context, resId, level(directory, 0))
+            var level = 0
+            while (longSide(size(level(directory, level))) > MIN_LEVEL_SIDE) {
+                level++
+                downsample(level(directory, 0), level, level(directory, level))
+            }
+            File(directory, COMPLETE).createNewFile()
+            info { "rendered campus map $name in ${level + 1} levels" }
+        }
+
+        val levels = generateSequence(0) { it + 1 }
+            .map { level(directory, it) }
+            .takeWhile { it.exists() }
+            .toList()
+        return CampusMapPyramid(levels, levels.map { size(it) })
+    }
+
+    private fun level(directory: File, level: Int) = File(directory, "level$level.png")
+
+    private fun longSide(size: Point) = max(size.x, size.y)
+
+    private fun size(file: File): Point {
+        val options = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeFile(file.path, options)
+        return Point(options.outWidth, options.outHeight)
+    }
+
+    private fun render(context: Context, @DrawableRes resId: Int, target: File) {
+        val value = TypedValue()
+        context.resources.getValue(resId, value, true)
+        if (value.string?.endsWith(".xml") != true) {
+            // shipped bitmap, read unscaled from drawable-nodpi
+            write(target) { output -> context.resources.openRawResource(resId).use { it.copyTo(output) } }
+            return
+        }
+
+        val drawable = AppCompatResources.getDrawable(context, resId) ?: throw IllegalArgumentException("no drawable $resId")
+        val scale = MAX_VECTOR_SIDE.toFloat() / max(drawable.intrinsicWidth, drawable.intrinsicHeight)
+        val width = (drawable.intrinsicWidth * scale).roundToInt()
+        val height = (drawable.intrinsicHeight * scale).roundToInt()
+        val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565)
+        Canvas(bitmap).apply {
+            drawColor(Color.WHITE)
+            drawable.setBounds(0, 0, width, height)
+            drawable.draw(this)
+        }
+        write(target) { bitmap.compress(Bitmap.CompressFormat.PNG, 100, it) }
+        bitmap.recycle()
+    }
+
+    private fun downsample(source: File, level: Int, target: File) {
+        val options = BitmapFactory.Options().apply {
+            inSampleSize = 1 shl level
+            inPreferredConfig = Bitmap.Config.RGB_565
+        }
+        val bitmap = BitmapFactory.decodeFile(source.path, options)
+        write(target) { bitmap.compress(Bitmap.CompressFormat.PNG, 100, it) }
+        bitmap.recycle()
+    }
+
+    private fun write(target: File, block: (OutputStream) -> Unit) {
+        val temporary = File(target.parentFile, "${target.name}.tmp")
+        temporary.outputStream().use(block)
+        if (!temporary.renameTo(target)) throw IllegalStateException("could not write $target")
+    }
+}
@@ -1,9 +1,12 @@
 package de.htwdd.htwdresden.utils
 
 import android.util.Log
+import androidx.tracing.Trace
+import androidx.tracing.trace
 import de.htwdd.htwdresden.BuildConfig
 
-private val IS_DEBUG: Boolean = BuildConfig.DEBUG
+@PublishedApi
+internal val IS_DEBUG: Boolean = BuildConfig.DEBUG
 
 sealed class LogLevel {
     object Verbose: LogLevel()
@@ -13,34 +16,64 @@ sealed class LogLevel {
     object Error: LogLevel()
 }
 
-private fun printLog(logLevel: LogLevel, tag: String, message: Any?) {
-    if (IS_DEBUG) {
-        val printableMessage = when (message) {
-            is Collection<*> -> message.toTypedArray().joinToString(", ")
-            else -> message.toString()
-        }
-
-        when (logLevel) {
-            is LogLevel.Verbose -> Log.v(tag, printableMessage)
-            is LogLevel.Debug   -> Log.d(tag, printableMessage)
-            is LogLevel.Info    -> Log.i(tag, printableMessage)
-            is LogLevel.Warn    -> Log.w(tag, printableMessage)
-            is LogLevel.Error   -> Log.e(tag, printableMessage)
-        }
+@PublishedApi
+internal fun printLog(logLevel: LogLevel, tag: String, message: Any?) {
+    val printableMessage = when (message) {
+        is Collection<*> -> message.toTypedArray().joinToString(", ")
+        else -> message.toString()
     }
-}
 
+    when (logLevel) {
+        is LogLevel.Verbose -> Log.v(tag, printableMessage)
+        is LogLevel.Debug   -> Log.d(tag, printableMessage)
+        is LogLevel.Info    -> Log.i(tag, printableMessage)
+        is LogLevel.Warn    -> Log.w(tag, printableMessage)
+        is LogLevel.Error   -> Log.e(tag, printableMessage)
+    }
+}
 
-fun verbose(tag: String, message: Any?) = printLog(LogLevel.Verbose, tag, message)
+// The message is only built in debug builds, release builds skip the interpolation as well
+inline fun verbose(tag: String, message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Verbose, tag, message())
+}
 
-fun debug(tag: String, message: Any?) = printLog(LogLevel.Debug, tag, message)
+inline fun debug(tag: String, message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Debug, tag, message())
+}
 
-fun info(tag: String, message: Any?) = printLog(LogLevel.Info, tag, message)
+inline fun info(tag: String, message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Info, tag, message())
+}
 
-fun warn(tag: String, message: Any?) = printLog(LogLevel.Warn, tag, message)
+inline fun warn(tag: String, message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Warn, tag, message())
+}
 
-fun error(tag: String, message: Any?) = printLog(LogLevel.Error, tag, message)
+fun error(tag: String, message: Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Error, tag, message)
+}
 
 fun error(exception: Throwable) {
-    error(exception.localizedMessage?.toString() ?: exception.javaClass.simpleName , Log.getStackTraceString(exception))
-}
\ No newline at end of file
+    if (IS_DEBUG) error(exception.localizedMessage?.toString() ?: exception.javaClass.simpleName , Log.getStackTraceString(exception))
+}
+
+//-------------------------------------------------------------------------------------------------- Tracing
+/**
+ * Pipeline stages as they are named in Perfetto/systrace captures.
+ */
+object Stage {
+    const val FETCH     = "fetch"
+    const val PARSE     = "parse"
+    const val PERSIST   = "persist"
+    const val MAP       = "map-to-items"
+    const val BIND      = "bind"
+}
+
+/**
+ * Runs [block] in a trace section of [stage], e.g. "fetch rubu2.rz.htw-dresden.de/API/v0/studentTimetable.php".
+ * The [detail] is only built while a trace is recorded.
+ */
+inline fun <T> traced(stage: String, detail: () -> String, block: () -> T): T {
+    val label = if (Trace.isEnabled()) "$stage ${detail()}".take(127) else stage
+    return trace(label, block)
+}
@@ -0,0 +1,52 @@
+package de.htwdd.htwdresden.utils
+
+/**
+ * Aho-Corasick automaton over keywords, each keyword carries one or more bits.
+ * [match] finds all keywords in a single pass over the text, ignoring case, and returns the union of their bits.
+ */
+class KeywordMatcher(keywords: Map<String, Int>) {
+
+    private val transitions = arrayListOf(HashMap<Char, Int>())
+    private val outputs = arrayListOf(0)
+    private val failures: IntArray
+
+    init {
+        keywords.forEach { (keyword, bits) ->
+            var node = 0
+            keyword.lowercase().forEach { char ->
+                node = transitions[node].getOrPut(char) {
+                    transitions.add(HashMap())
+                    outputs.add(0)
+                    transitions.size - 1
+                }
+            }
+            outputs[node] = outputs[node] or bits
+        }
+
+        // breadth first, so the failure of a node's parent is known before the node
+        failures = IntArray(transitions.size)
+        val queue = ArrayDeque(transitions[0].values)
+        while (queue.isNotEmpty()) {
+            val node = queue.removeFirst()
+            transitions[node].forEach { (char, child) ->
+                var fallback = failures[node]
+                while (fallback != 0 && !transitions[fallback].containsKey(char)) fallback = failures[fallback]
+                failures[child] = transitions[fallback][char]?.takeIf { it != child } ?: 0
+                outputs[child] = outputs[child] or outputs[failures[child]]
+                queue.addLast(child)
+            }
+        }
+    }
+
+    fun match(text: CharSequence): Int {
+        var bits = 0
+        var node = 0
+        for (index in text.indices) {
+            val char = text[index].lowercaseChar()
+            while (node != 0 && !transitions[node].containsKey(char)) node = failures[node]
+            node = transitions[node][char] ?: 0
+            bits = bits or outputs[node]
+        }
+        return bits
+    }
+}
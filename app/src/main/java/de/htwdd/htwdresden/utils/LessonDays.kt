@@ -0,0 +1,121 @@
+package de.htwdd.htwdresden.utils
+
+import java.util.*
+
+/**
+ * Occurrence dates of a weekly lesson from its ISO weekday and the ISO weeks it takes place in.
+ * Pure epoch day arithmetic, no [Calendar] is created.
+ */
+object LessonDays {
+
+    private const val MILLIS_PER_DAY = 24L * 60L * 60L * 1000L
+
+    /**
+     * Epoch days of all occurrences, in the order of [weeksOnly].
+     *
+     * A week number lower than its predecessor starts the next year (winter semester). If the list wraps like this and
+     * the first week lies more than ten weeks ahead of [today], the semester started last year.
+     *
+     * @param dayOfWeek 1 = monday … 7 = sunday, 0 is treated as sunday
+     */
+    fun epochDays(dayOfWeek: Long, weeksOnly: List<Long>, today: Long = today()): LongArray {
+        val result = LongArray(weeksOnly.size)
+        if (weeksOnly.isEmpty()) return result
+
+        val isoDay = (dayOfWeek - 1).mod(7L) + 1
+        val currentWeekYear = weekYear(today)
+        val wraps = (1 until weeksOnly.size).any { weeksOnly[it] < weeksOnly[it - 1] }
+        var year = if (wraps && weekOfYear(today, currentWeekYear) + 10 < weeksOnly[0]) currentWeekYear - 1 else currentWeekYear
+        var firstMonday = mondayOfFirstWeek(year)
+
+        weeksOnly.forEachIndexed { index, week ->
+            if (index > 0 && week < weeksOnly[index - 1]) {
+                year += 1
+                firstMonday = mondayOfFirstWeek(year)
+            }
+            result[index] = firstMonday + (week - 1) * 7 + (isoDay - 1)
+        }
+        return result
+    }
+
+    /**
+     * Epoch day of the given point in time in the default time zone.
+     */
+    fun epochDay(date: Date = Date()): Long {
+        val time = date.time
+        return (time + TimeZone.getDefault().getOffset(time)).floorDiv(MILLIS_PER_DAY)
+    }
+
+    fun today() = epochDay(Date())
+
+    /**
+     * Formats an epoch day as "MM-dd-yyyy", the format lesson days are stored in.
+     */
+    fun format(epochDay: Long): String {
+        val civil = civilFromDays(epochDay)
+        val year = civil / 10_000
+        val month = (civil / 100 % 100).toInt()
+        val day = (civil % 100).toInt()
+        return StringBuilder(10).apply {
+            if (month < 10) append('0')
+            append(month).append('-')
+            if (day < 10) append('0')
+            append(day).append('-')
+            append(year)
+        }.toString()
+    }
+
+    /**
+     * Epoch day of a lesson day stored as "MM-dd-yyyy", null if it is malformed.
+     */
+    fun parse(day: String): Long? {
+        if (day.length != 10 || day[2] != '-' || day[5] != '-') return null
+        val month = day.substring(0, 2).toIntOrNull() ?: return null
+        val dayOfMonth = day.substring(3, 5).toIntOrNull() ?: return null
+        val year = day.substring(6).toLongOrNull() ?: return null
+        return daysFromCivil(year, month, dayOfMonth)
+    }
+
+    //---------------------------------------------------------------------------------------------- ISO week
+    /** Monday of the ISO week [epochDay] lies in. */
+    fun weekStart(epochDay: Long) = epochDay - (isoDayOfWeek(epochDay) - 1)
+
+    /** ISO weekday, 1 = monday … 7 = sunday. 1970-01-01 was a thursday. */
+    private fun isoDayOfWeek(epochDay: Long) = (epochDay + 3).mod(7L) + 1
+
+    /** The 4th of january always lies in the first ISO week of its year. */
+    private fun mondayOfFirstWeek(year: Long): Long {
+        val january4 = daysFromCivil(year, 1, 4)
+        return january4 - (isoDayOfWeek(january4) - 1)
+    }
+
+    /** Year of the thursday in the same week. */
+    private fun weekYear(epochDay: Long) = civilFromDays(epochDay - isoDayOfWeek(epochDay) + 4) / 10_000
+
+    private fun weekOfYear(epochDay: Long, weekYear: Long) = (epochDay - mondayOfFirstWeek(weekYear)) / 7 + 1
+
+    //---------------------------------------------------------------------------------------------- Civil calendar
+    // Proleptic gregorian calendar, see http://howardhinnant.github.io/date_algorithms.html
+    private fun daysFromCivil(year: Long, month: Int, day: Int): Long {
+        val y = if (month <= 2) year - 1 else year
+        val era = y.floorDiv(400L)
+        val yearOfEra = y - era * 400
+        val dayOfYear = (153 * (if (month > 2) month - 3 else month + 9) + 2) / 5 + day - 1
+        val dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear
+        return era * 146097 + dayOfEra - 719468
+    }
+
+    /** Returns the date packed as yyyyMMdd. */
+    private fun civilFromDays(epochDay: Long): Long {
+        val z = epochDay + 719468
+        val era = z.floorDiv(146097L)
+        val dayOfEra = z - era * 146097
+        val yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365
+        val dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100)
+        val mp = (5 * dayOfYear + 2) / 153
+        val day = dayOfYear - (153 * mp + 2) / 5 + 1
+        val month = if (mp < 10) mp + 3 else mp - 9
+        val year = yearOfEra + era * 400 + (if (month <= 2) 1 else 0)
+        return year * 10_000 + month * 100 + day
+    }
+}
@@ -0,0 +1,75 @@
+package de.htwdd.htwdresden.utils
+
+import de.htwdd.htwdresden.ui.models.TimetableRealm
+import java.util.*
+
+/**
+ * Lessons as sorted, disjoint intervals of [WallClock] minutes. Lessons with a break of at most
+ * [MAX_BREAK] minutes between them form one interval, so the phone stays muted between consecutive lessons.
+ * The schedule is built once from all occurrences, [next] is a binary search over it.
+ */
+class MuteSchedule private constructor(private val starts: LongArray, private val ends: LongArray) {
+
+    /**
+     * The phone is muted ([mute]) or unmuted at the local wall clock [minute].
+     */
+    data class Transition(val minute: Long, val mute: Boolean)
+
+    companion object {
+        const val MAX_BREAK = 20L
+
+        /**
+         * @param intervals begin and end of each occurrence in local wall clock minutes, in any order
+         */
+        fun of(intervals: List<Pair<Long, Long>>): MuteSchedule {
+            val sorted = intervals.filter { it.first < it.second }.sortedBy { it.first }
+            val starts = ArrayList<Long>(sorted.size)
+            val ends = ArrayList<Long>(sorted.size)
+            sorted.forEach { (start, end) ->
+                if (ends.isNotEmpty() && start <= ends.last() + MAX_BREAK) {
+                    if (end > ends.last()) ends[ends.lastIndex] = end
+                } else {
+                    starts.add(start)
+                    ends.add(end)
+                }
+            }
+            return MuteSchedule(starts.toLongArray(), ends.toLongArray())
+        }
+
+        /**
+         * Schedule of all lesson days of [timetables], the caller filters hidden lessons. Reads the fields of frozen
+         * timetables directly.
+         */
+        fun of(timetables: Collection<TimetableRealm>, zone: TimeZone = TimeZone.getDefault()): MuteSchedule {
+            val intervals = ArrayList<Pair<Long, Long>>()
+            timetables.forEach { timetable ->
+                val begin = WallClock.minuteOfDay(timetable.beginTime ?: return@forEach, zone)
+                val end = WallClock.minuteOfDay(timetable.endTime ?: return@forEach, zone)
+                timetable.lessonDays.forEach { day ->
+                    LessonDays.parse(day)?.let { epochDay ->
+                        intervals.add(WallClock.minute(epochDay, begin) to WallClock.minute(epochDay, end))
+                    }
+                }
+            }
+            return of(intervals)
+        }
+    }
+
+    val size get() = starts.size
+
+    /**
+     * The first transition after [minute], null after the last lesson.
+     */
+    fun next(minute: Long): Transition? {
+        var low = 0
+        var high = ends.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (ends[middle] <= minute) low = middle + 1 else high = middle
+        }
+        if (low == ends.size) return null
+        return if (starts[low] <= minute) Transition(ends[low], false) else Transition(starts[low], true)
+    }
+
+    fun isMuted(minute: Long) = next(minute)?.mute == false
+}
@@ -0,0 +1,28 @@
+package de.htwdd.htwdresden.utils
+
+import java.util.*
+
+/**
+ * Local wall clock minutes since the epoch, the unit lesson occurrences are computed in. The minute of day `m` of
+ * epoch day `d` is `d * MINUTES_PER_DAY + m`, it is converted to an instant with the offset the zone has then.
+ */
+object WallClock {
+
+    const val MINUTES_PER_DAY = 24L * 60L
+    private const val MILLIS_PER_MINUTE = 60L * 1000L
+
+    fun toMinute(millis: Long, zone: TimeZone = TimeZone.getDefault()) =
+        (millis + zone.getOffset(millis)).floorDiv(MILLIS_PER_MINUTE)
+
+    fun toMillis(minute: Long, zone: TimeZone = TimeZone.getDefault()): Long {
+        val local = minute * MILLIS_PER_MINUTE
+        return local - zone.getOffset(local - zone.getOffset(local))
+    }
+
+    fun minute(epochDay: Long, minuteOfDay: Long) = epochDay * MINUTES_PER_DAY + minuteOfDay
+
+    fun epochDay(minute: Long) = minute.floorDiv(MINUTES_PER_DAY)
+
+    // begin and end times are stored as time of day on the first of january 1970
+    fun minuteOfDay(time: Date, zone: TimeZone = TimeZone.getDefault()) = toMinute(time.time, zone).mod(MINUTES_PER_DAY)
+}
@@ -1,7 +1,10 @@
 package de.htwdd.htwdresden.utils.extensions
 
 import com.google.firebase.crashlytics.FirebaseCrashlytics
+import de.htwdd.htwdresden.utils.IS_DEBUG
+import de.htwdd.htwdresden.utils.LogLevel
 import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import de.htwdd.htwdresden.utils.printLog
 import java.util.*
 
 fun <T: Any> T.TAG() = this::class.java.simpleName
@@ -13,13 +16,21 @@ inline fun <T> T.guard(block: T.() -> Unit): T {
     return this
 }
 
-fun <T: Any> T.verbose(message: Any?) = de.htwdd.htwdresden.utils.verbose(TAG(), message)
+inline fun <T: Any> T.verbose(message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Verbose, TAG(), message())
+}
 
-fun <T: Any> T.debug(message: Any?) = de.htwdd.htwdresden.utils.debug(TAG(), message)
+inline fun <T: Any> T.debug(message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Debug, TAG(), message())
+}
 
-fun <T: Any> T.info(message: Any?) = de.htwdd.htwdresden.utils.info(TAG(), message)
+inline fun <T: Any> T.info(message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Info, TAG(), message())
+}
 
-fun <T: Any> T.warn(message: Any?) = de.htwdd.htwdresden.utils.warn(TAG(), message)
+inline fun <T: Any> T.warn(message: () -> Any?) {
+    if (IS_DEBUG) printLog(LogLevel.Warn, TAG(), message())
+}
 
 fun <T: Any> T.error(message: Any?) = de.htwdd.htwdresden.utils.error(TAG(), message)
 
@@ -10,12 +10,12 @@ import io.reactivex.schedulers.Schedulers
 //-------------------------------------------------------------------------------------------------- Observable
 fun <T> Observable<T>.debug(): Observable<T> {
     return this
-        .doOnDispose { debug("disposed") }
-        .doOnComplete { debug("completed") }
-        .doOnNext { debug("onNext: $it") }
-        .doOnError { debug("onError: $it") }
-        .doOnSubscribe { debug("subscribed: $it") }
-        .doOnTerminate { debug("terminated") }
+        .doOnDispose { debug { "disposed" } }
+        .doOnComplete { debug { "completed" } }
+        .doOnNext { debug { "onNext: $it" } }
+        .doOnError { debug { "onError: $it" } }
+        .doOnSubscribe { debug { "subscribed: $it" } }
+        .doOnTerminate { debug { "terminated" } }
 }
 
 fun <T> Observable<T>.runInThread(type: Scheduler = Schedulers.newThread()): Observable<T> {
@@ -1,20 +1,38 @@
 package de.htwdd.htwdresden.utils.extensions
 
-import io.realm.Realm
+import de.htwdd.htwdresden.db.withFrozenRealm
+import de.htwdd.htwdresden.db.withRealm
 import io.realm.RealmModel
 import io.realm.RealmObject
 import io.realm.RealmQuery
+import io.realm.RealmResults
 
 typealias Query<T> = RealmQuery<T>.() -> Unit
 
-fun <T: RealmModel> T.queryFirst(query: Query<T>): T? {
-    Realm.getDefaultInstance().use { realm ->
+/**
+ * Unmanaged copy of the first match, only for objects about to be edited. Use [frozenFirst] to read.
+ */
+fun <T: RealmModel> T.copyFirst(query: Query<T>): T? {
+    return withRealm { realm ->
         val item: T? = realm.where(this.javaClass).withQuery(query).findFirst()
-        return if(item != null && RealmObject.isValid(item)) realm.copyFromRealm(item) else null
+        if(item != null && RealmObject.isValid(item)) realm.copyFromRealm(item) else null
     }
 }
 
+/**
+ * Reads the first match on the latest frozen version without a copy, the object is released after [read].
+ */
+inline fun <T: RealmModel, R> Class<T>.frozenFirst(noinline query: Query<T> = {}, read: (T?) -> R): R =
+    withFrozenRealm { realm -> read(realm.where(this).apply(query).findFirst()) }
+
+/**
+ * Reads all matches on the latest frozen version without a copy, objects are loaded when accessed and released
+ * after [read].
+ */
+inline fun <T: RealmModel, R> Class<T>.frozenAll(noinline query: Query<T> = {}, read: (RealmResults<T>) -> R): R =
+    withFrozenRealm { realm -> read(realm.where(this).apply(query).findAll()) }
+
 private inline fun <T> T.withQuery(block: (T) -> Unit): T {
     block(this)
     return this
-}
\ No newline at end of file
+}
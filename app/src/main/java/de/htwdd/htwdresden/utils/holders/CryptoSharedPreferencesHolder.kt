@@ -4,15 +4,20 @@ import android.content.Context
 import android.content.SharedPreferences
 import android.util.Base64
 import androidx.core.content.edit
+import androidx.security.crypto.EncryptedFile
 import androidx.security.crypto.EncryptedSharedPreferences
 import androidx.security.crypto.MasterKeys
+import de.htwdd.htwdresden.classes.Const
+import de.htwdd.htwdresden.ui.models.DietFilter
 import de.htwdd.htwdresden.utils.extensions.guard
 import io.reactivex.subjects.BehaviorSubject
+import java.io.File
 import java.nio.charset.Charset
 
 class CryptoSharedPreferencesHolder private constructor() {
 
     private object Holder { val INSTANCE = CryptoSharedPreferencesHolder() }
+    private lateinit var context: Context
     private lateinit var masterKeyAlias: String
     private lateinit var sharedPreferences: SharedPreferences
 
@@ -20,12 +25,16 @@ class CryptoSharedPreferencesHolder private constructor() {
         object StudyToken: SubscribeType()
         object AuthToken: SubscribeType()
         object Crashlytics: SubscribeType()
+        object DietFilter: SubscribeType()
+        object ExamUpdate: SubscribeType()
+        object AutoMute: SubscribeType()
     }
 
     companion object {
         private val subject = BehaviorSubject.create<SubscribeType>()
         val instance: CryptoSharedPreferencesHolder by lazy { Holder.INSTANCE }
         fun init(context: Context) {
+            instance.context = context.applicationContext
             instance.masterKeyAlias = MasterKeys.getOrCreate(MasterKeys.AES256_GCM_SPEC)
             instance.sharedPreferences = EncryptedSharedPreferences.create(
                 "htw_encrypted_shared_prefs",
@@ -39,6 +48,12 @@ class CryptoSharedPreferencesHolder private constructor() {
         private const val AUTH_TOKEN        = "AUTH_TOKEN"
         private const val IS_FIRST_RUN      = "IS_FIRST_RUN"
         private const val HAS_CRASHLYTICS   = "HAS_CRASHLYTICS"
+        private const val DIET              = "DIET"
+        private const val DIET_EXCLUDED     = "DIET_EXCLUDED"
+        private const val ASKED_LOCATION    = "ASKED_LOCATION"
+        private const val EXAM_UPDATE       = Const.preferencesKey.PREFERENCES_AUTO_EXAM_UPDATE
+        private const val AUTO_MUTE         = Const.preferencesKey.PREFERENCES_AUTO_MUTE
+        private const val AUTO_MUTE_MODE    = Const.preferencesKey.PREFERENCES_AUTO_MUTE_MODE
     }
 
     fun putStudyToken(studyToken: String) {
@@ -53,10 +68,8 @@ class CryptoSharedPreferencesHolder private constructor() {
     fun getStudyAuth() = readAuthToken(getStudyToken())
 
     fun putAuthToken(authToken: String) {
-        sharedPreferences.edit {
-            subject.onNext(SubscribeType.AuthToken)
-            putString(AUTH_TOKEN, authToken)
-        }
+        sharedPreferences.edit { putString(AUTH_TOKEN, authToken) }
+        subject.onNext(SubscribeType.AuthToken)
     }
 
     fun getAuthToken() = sharedPreferences.getString(AUTH_TOKEN, "")
@@ -74,8 +87,47 @@ class CryptoSharedPreferencesHolder private constructor() {
         }
     }
 
+    fun getDietFilter() = DietFilter(sharedPreferences.getInt(DIET, 0), sharedPreferences.getInt(DIET_EXCLUDED, 0))
+
+    fun putDietFilter(filter: DietFilter) {
+        sharedPreferences.edit {
+            putInt(DIET, filter.diet)
+            putInt(DIET_EXCLUDED, filter.excluded)
+        }
+        subject.onNext(SubscribeType.DietFilter)
+    }
+
+    fun hasExamUpdate() = sharedPreferences.getBoolean(EXAM_UPDATE, true)
+
+    fun setExamUpdate(active: Boolean) {
+        sharedPreferences.edit { putBoolean(EXAM_UPDATE, active) }
+        subject.onNext(SubscribeType.ExamUpdate)
+    }
+
+    fun hasAutoMute() = sharedPreferences.getBoolean(AUTO_MUTE, false)
+
+    fun getAutoMuteMode() = sharedPreferences.getInt(AUTO_MUTE_MODE, 0)
+
+    fun setAutoMute(active: Boolean, mode: Int = getAutoMuteMode()) {
+        sharedPreferences.edit {
+            putBoolean(AUTO_MUTE, active)
+            putInt(AUTO_MUTE_MODE, mode)
+        }
+        subject.onNext(SubscribeType.AutoMute)
+    }
+
+    fun setLocationAsked() = sharedPreferences.edit { putBoolean(ASKED_LOCATION, true) }
+
+    fun wasLocationAsked() = sharedPreferences.getBoolean(ASKED_LOCATION, false)
+
     fun onChanged() = subject
 
+    /**
+     * [file] encrypted with the master key of the preferences, for personal data kept outside of them.
+     */
+    fun encryptedFile(file: File): EncryptedFile =
+        EncryptedFile.Builder(file, context, masterKeyAlias, EncryptedFile.FileEncryptionScheme.AES256_GCM_HKDF_4KB).build()
+
     fun clear() {
         sharedPreferences.edit {
             remove(STUDY_TOKEN)
@@ -84,6 +136,15 @@ class CryptoSharedPreferencesHolder private constructor() {
             subject.onNext(SubscribeType.AuthToken)
             remove(HAS_CRASHLYTICS)
             subject.onNext(SubscribeType.Crashlytics)
+            remove(DIET)
+            remove(DIET_EXCLUDED)
+            subject.onNext(SubscribeType.DietFilter)
+            remove(EXAM_UPDATE)
+            subject.onNext(SubscribeType.ExamUpdate)
+            remove(AUTO_MUTE)
+            remove(AUTO_MUTE_MODE)
+            subject.onNext(SubscribeType.AutoMute)
+            remove(ASKED_LOCATION)
             remove(IS_FIRST_RUN)
         }
     }
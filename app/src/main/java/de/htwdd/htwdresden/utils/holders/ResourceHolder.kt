@@ -59,6 +59,8 @@ class ResourceHolder private constructor() {
 
     fun getCacheDirectory(): File = ctx.applicationContext.cacheDir
 
+    fun getFilesDirectory(): File = ctx.applicationContext.filesDir
+
     fun getDrawable(@DrawableRes id: Int) = ctx.getDrawable(id)
 
 
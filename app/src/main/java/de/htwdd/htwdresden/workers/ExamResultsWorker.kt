@@ -0,0 +1,160 @@
+package de.htwdd.htwdresden.workers
+
+import android.app.NotificationChannel
+import android.app.NotificationManager
+import android.app.PendingIntent
+import android.content.Context
+import android.content.Intent
+import android.net.Uri
+import android.os.Build
+import androidx.core.app.NotificationCompat
+import androidx.core.app.NotificationManagerCompat
+import androidx.work.*
+import de.htwdd.htwdresden.R
+import de.htwdd.htwdresden.classes.Const
+import de.htwdd.htwdresden.network.GradeRepository
+import de.htwdd.htwdresden.network.SemesterPlanRepository
+import de.htwdd.htwdresden.ui.models.Grade
+import de.htwdd.htwdresden.ui.models.GradeState
+import de.htwdd.htwdresden.ui.models.SemesterPlan
+import de.htwdd.htwdresden.ui.views.activities.MainActivity
+import de.htwdd.htwdresden.utils.extensions.error
+import de.htwdd.htwdresden.utils.extensions.info
+import de.htwdd.htwdresden.utils.extensions.nullWhenEmpty
+import de.htwdd.htwdresden.utils.holders.CryptoSharedPreferencesHolder
+import io.reactivex.Single
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Polls the grades of the logged in student and notifies about new results. Grades go through [GradeRepository], so a
+ * run only queries courses with open exams. Every run enqueues the next one, the delay depends on open exams and the
+ * exam periods of the semester plan, see [interval].
+ */
+class ExamResultsWorker(context: Context, parameters: WorkerParameters): RxWorker(context, parameters) {
+
+    companion object {
+        private const val WORK_NAME         = "examResults"
+        private const val NOTIFICATION_ID   = 1
+        private const val MAX_LINES         = 5
+
+        val EXAM_PERIOD_INTERVAL            = TimeUnit.HOURS.toMillis(2)
+        val OPEN_EXAMS_INTERVAL             = TimeUnit.HOURS.toMillis(8)
+        val IDLE_INTERVAL                   = TimeUnit.DAYS.toMillis(1)
+        // results are published up to some weeks after the exam period
+        private val RESULTS_PERIOD          = TimeUnit.DAYS.toMillis(42)
+
+        /**
+         * Enqueues the watcher unless it is already pending.
+         */
+        fun schedule(context: Context) = enqueue(context, EXAM_PERIOD_INTERVAL, ExistingWorkPolicy.KEEP)
+
+        fun cancel(context: Context) {
+            WorkManager.getInstance(context).cancelUniqueWork(WORK_NAME)
+        }
+
+        private fun enqueue(context: Context, delay: Long, policy: ExistingWorkPolicy) {
+            val request = OneTimeWorkRequestBuilder<ExamResultsWorker>()
+                .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                .setConstraints(Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .build()
+            WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, policy, request)
+        }
+
+        /**
+         * Polls often while results of open exams are expected, i.e. from the begin of an exam period until
+         * [RESULTS_PERIOD] after its end, and backs off otherwise.
+         */
+        fun interval(now: Date, plans: List<SemesterPlan>, hasOpenExams: Boolean): Long {
+            if (!hasOpenExams) return IDLE_INTERVAL
+            val expectsResults = plans.any { now.time in it.examsPeriod.beginDay.time..it.examsPeriod.endDay.time + RESULTS_PERIOD }
+            return if (expectsResults) EXAM_PERIOD_INTERVAL else OPEN_EXAMS_INTERVAL
+        }
+
+        /**
+         * Results which are new or whose state or grade changed, enrollments are no results.
+         */
+        fun changedResults(before: List<Grade>, after: List<Grade>): List<Grade> {
+            val known = before.associateBy { it.id }
+            return after.filter { grade ->
+                val previous = known[grade.id]
+                grade.state !is GradeState.Enrolled && (previous == null || previous.state != grade.state || previous.grade != grade.grade)
+            }
+        }
+    }
+
+    override fun createWork(): Single<Result> {
+        val cph = CryptoSharedPreferencesHolder.instance
+        val auth = cph.getAuthToken()?.nullWhenEmpty
+        if (auth == null || !cph.hasExamUpdate()) return Single.just(Result.success())
+
+        val before = GradeRepository.storedGrades(auth)
+        return GradeRepository.courses(auth)
+            .flatMap { courses -> GradeRepository.grades(auth, courses, true) }
+            .firstOrError()
+            .doOnSuccess { after ->
+                // the first run only records the grades to compare with
+                if (before.isNotEmpty()) notify(changedResults(before, after))
+            }
+            .onErrorReturn {
+                error(it)
+                before
+            }
+            .flatMap { grades ->
+                SemesterPlanRepository.plans()
+                    .firstOrError()
+                    .onErrorReturnItem(emptyList())
+                    .map { plans -> interval(Date(), plans, grades.any { it.state is GradeState.Enrolled }) }
+            }
+            .doOnSuccess { delay ->
+                info { "exam results: next run in ${TimeUnit.MILLISECONDS.toMinutes(delay)} min" }
+                enqueue(applicationContext, delay, ExistingWorkPolicy.APPEND_OR_REPLACE)
+            }
+            .map { Result.success() }
+    }
+
+    private fun notify(results: List<Grade>) {
+        if (results.isEmpty()) return
+        val context = applicationContext
+        val manager = NotificationManagerCompat.from(context)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(NotificationChannel(
+                Const.NOTIFICATION_CHANNEL_EXAMS,
+                context.getString(R.string.navi_exams),
+                NotificationManager.IMPORTANCE_DEFAULT))
+        }
+
+        val intent = Intent(Intent.ACTION_VIEW, Uri.parse("htw://grades"), context, MainActivity::class.java)
+        val contentIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE)
+        val lines = results.take(MAX_LINES).map { line(it) }
+        val style = NotificationCompat.InboxStyle().apply {
+            lines.forEach { addLine(it) }
+            if (results.size > MAX_LINES) {
+                setSummaryText(context.getString(R.string.exams_notification_more_results, results.size - MAX_LINES))
+            }
+        }
+
+        val notification = NotificationCompat.Builder(context, Const.NOTIFICATION_CHANNEL_EXAMS)
+            .setSmallIcon(R.drawable.ic_grades)
+            .setContentTitle(context.resources.getQuantityString(R.plurals.exams_notification_title, results.size, results.size))
+            .setContentText(if (results.size == 1) lines.first() else context.getString(R.string.exams_notification_contentText))
+            .setStyle(style)
+            .setContentIntent(contentIntent)
+            .setAutoCancel(true)
+            .build()
+        manager.notify(NOTIFICATION_ID, notification)
+    }
+
+    private fun line(result: Grade): String {
+        val context = applicationContext
+        result.grade?.let { return context.getString(R.string.exams_notification_result, result.examination, it / 100f) }
+        val state = when (result.state) {
+            is GradeState.Enrolled      -> result.state.state
+            is GradeState.Passed        -> result.state.state
+            is GradeState.Failed        -> result.state.state
+            is GradeState.FinalFailed   -> result.state.state
+            is GradeState.Unknown       -> result.state.state
+        }
+        return "${result.examination} (${context.getString(state)})"
+    }
+}
@@ -0,0 +1,34 @@
+package de.htwdd.htwdresden.macrobenchmark
+
+import androidx.benchmark.macro.ExperimentalBaselineProfilesApi
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+
+/**
+ * Generates the baseline profile of :app from the benchmarked journeys.
+ * Needs a rooted device or emulator (API 28+), copy the printed file to app/src/main/baseline-prof.txt.
+ */
+@LargeTest
+@OptIn(ExperimentalBaselineProfilesApi::class)
+class BaselineProfileGenerator {
+
+    @get:Rule
+    val baselineProfileRule = BaselineProfileRule()
+
+    @get:Rule
+    val mockServerRule = MockServerRule()
+
+    @Test
+    fun generate() = baselineProfileRule.collectBaselineProfile(PACKAGE_NAME) {
+        setupApp()
+        pressHome()
+        startActivityAndWait()
+        overviewJourney()
+        timetableListJourney()
+        timetableCalendarJourney()
+        mealsJourney()
+        gradesJourney()
+    }
+}
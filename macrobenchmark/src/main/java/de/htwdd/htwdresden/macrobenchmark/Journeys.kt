@@ -0,0 +1,69 @@
+package de.htwdd.htwdresden.macrobenchmark
+
+import android.content.Intent
+import android.net.Uri
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Direction
+import androidx.test.uiautomator.Until
+
+const val PACKAGE_NAME = "de.htwdd.htwdresden"
+
+private const val TIMEOUT = 5_000L
+
+/**
+ * Skips onboarding and stores fake credentials in the app under test.
+ */
+fun MacrobenchmarkScope.setupApp() {
+    device.executeShellCommand("am broadcast -n $PACKAGE_NAME/.benchmark.BenchmarkSetupReceiver")
+}
+
+fun MacrobenchmarkScope.startDeepLink(uri: String) = startActivityAndWait { intent: Intent ->
+    intent.data = Uri.parse(uri)
+    intent.flags = Intent.FLAG_ACTIVITY_NEW_TASK or Intent.FLAG_ACTIVITY_CLEAR_TASK
+}
+
+fun MacrobenchmarkScope.scrollList(resourceId: String) {
+    val list = device.wait(Until.findObject(By.res(PACKAGE_NAME, resourceId)), TIMEOUT) ?: return
+    // Keep the gesture away from the navigation drawer edge
+    list.setGestureMargin(device.displayWidth / 5)
+    device.waitForIdle()
+    repeat(3) {
+        list.fling(Direction.DOWN)
+        device.waitForIdle()
+    }
+    list.fling(Direction.UP)
+    device.waitForIdle()
+}
+
+fun MacrobenchmarkScope.overviewJourney() {
+    startActivityAndWait()
+    scrollList("overviewRecycler")
+}
+
+fun MacrobenchmarkScope.timetableListJourney() {
+    startDeepLink("htw://timetable")
+    scrollList("timetableRecycler")
+}
+
+fun MacrobenchmarkScope.timetableCalendarJourney() {
+    startDeepLink("htw://timetable")
+    device.wait(Until.findObject(By.res(PACKAGE_NAME, "menu_calendar")), TIMEOUT)?.click()
+    val pager = device.wait(Until.findObject(By.res(PACKAGE_NAME, "viewPager")), TIMEOUT) ?: return
+    pager.setGestureMargin(device.displayWidth / 5)
+    device.waitForIdle()
+    pager.swipe(Direction.LEFT, 1f)
+    device.waitForIdle()
+    pager.swipe(Direction.RIGHT, 1f)
+    device.waitForIdle()
+}
+
+fun MacrobenchmarkScope.mealsJourney() {
+    startDeepLink("htw://meals")
+    scrollList("mealRecycler")
+}
+
+fun MacrobenchmarkScope.gradesJourney() {
+    startDeepLink("htw://grades")
+    scrollList("gradesRecycler")
+}
@@ -0,0 +1,50 @@
+package de.htwdd.htwdresden.macrobenchmark
+
+import androidx.test.platform.app.InstrumentationRegistry
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.rules.ExternalResource
+
+/**
+ * Serves the recorded payloads in assets/fixtures for the benchmark build of the app.
+ * The app maps every api host to a path prefix on http://localhost:8080/ (see RestApi.baseUrl).
+ */
+class MockServerRule: ExternalResource() {
+
+    private val server = MockWebServer()
+
+    private val assets = InstrumentationRegistry.getInstrumentation().context.assets
+
+    private val routes = listOf(
+        "/rubu/studentTimetable.php"    to "timetable.json",
+        "/rubu/studyGroups.php"         to "empty_list.json",
+        "/docs/notes"                   to "notes.json",
+        "/docs/semesterplan"            to "empty_list.json",
+        "/qis/getcourses"               to "courses.json",
+        "/qis/getgrades"                to "grades.json",
+        "/mensa/canteens/"              to "meals.json",
+        "/mensa/canteens"               to "canteens.json",
+        "/www2/GetExams.php"            to "empty_list.json"
+    )
+
+    override fun before() {
+        server.dispatcher = object: Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val path = request.path ?: return MockResponse().setResponseCode(404)
+                val fixture = routes.firstOrNull { path.startsWith(it.first) }?.second ?: return MockResponse().setResponseCode(404)
+                return MockResponse()
+                    .setHeader("Content-Type", "application/json; charset=utf-8")
+                    .setBody(assets.open("fixtures/$fixture").bufferedReader().use { it.readText() })
+            }
+        }
+        server.start(PORT)
+    }
+
+    override fun after() = server.shutdown()
+
+    companion object {
+        const val PORT = 8080
+    }
+}
@@ -0,0 +1,57 @@
+package de.htwdd.htwdresden.macrobenchmark
+
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.FrameTimingMetric
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Frame timing while opening and scrolling the main screens.
+ */
+@LargeTest
+@RunWith(Parameterized::class)
+class ScreenBenchmark(private val compilationMode: CompilationMode) {
+
+    @get:Rule
+    val benchmarkRule = MacrobenchmarkRule()
+
+    @get:Rule
+    val mockServerRule = MockServerRule()
+
+    companion object {
+        @JvmStatic
+        @Parameterized.Parameters(name = "compilation={0}")
+        fun parameters() = listOf(CompilationMode.None(), CompilationMode.Partial())
+    }
+
+    @Test
+    fun overview() = measure { overviewJourney() }
+
+    @Test
+    fun timetableList() = measure { timetableListJourney() }
+
+    @Test
+    fun timetableCalendar() = measure { timetableCalendarJourney() }
+
+    @Test
+    fun meals() = measure { mealsJourney() }
+
+    @Test
+    fun grades() = measure { gradesJourney() }
+
+    private fun measure(journey: MacrobenchmarkScope.() -> Unit) = benchmarkRule.measureRepeated(
+        packageName = PACKAGE_NAME,
+        metrics = listOf(FrameTimingMetric()),
+        compilationMode = compilationMode,
+        startupMode = StartupMode.WARM,
+        iterations = 5,
+        setupBlock = { setupApp() },
+        measureBlock = journey
+    )
+}
@@ -0,0 +1,46 @@
+package de.htwdd.htwdresden.macrobenchmark
+
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.StartupTimingMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Cold start into the overview, with and without the baseline profile of :app.
+ *
+ * ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest
+ */
+@LargeTest
+@RunWith(Parameterized::class)
+class StartupBenchmark(private val compilationMode: CompilationMode) {
+
+    @get:Rule
+    val benchmarkRule = MacrobenchmarkRule()
+
+    @get:Rule
+    val mockServerRule = MockServerRule()
+
+    companion object {
+        @JvmStatic
+        @Parameterized.Parameters(name = "compilation={0}")
+        fun parameters() = listOf(CompilationMode.None(), CompilationMode.Partial())
+    }
+
+    @Test
+    fun startup() = benchmarkRule.measureRepeated(
+        packageName = PACKAGE_NAME,
+        metrics = listOf(StartupTimingMetric()),
+        compilationMode = compilationMode,
+        startupMode = StartupMode.COLD,
+        iterations = 10,
+        setupBlock = { setupApp() }
+    ) {
+        pressHome()
+        startActivityAndWait()
+    }
+}